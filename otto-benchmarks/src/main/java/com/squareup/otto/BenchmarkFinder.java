@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+/**
+ * {@link HandlerFinder} implementations compared by the benchmarks. {@code GENERATED} is the finder emitted by
+ * {@code OttoProcessor} for the listeners declared in this module.
+ */
+public enum BenchmarkFinder {
+  ANNOTATED {
+    @Override HandlerFinder create() {
+      return HandlerFinder.ANNOTATED;
+    }
+  },
+  GENERATED {
+    @Override HandlerFinder create() {
+      return new GeneratedHandlerFinder();
+    }
+  };
+
+  abstract HandlerFinder create();
+}
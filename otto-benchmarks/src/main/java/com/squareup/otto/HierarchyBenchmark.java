@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Bus#post(Object)} throughput for events of an increasingly deep class hierarchy delivered to a
+ * single subscriber of the root event type.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HierarchyBenchmark {
+
+  private static final Object[] EVENTS = {
+      new Event0(), new Event1(), new Event2(), new Event3(), new Event4(),
+      new Event5(), new Event6(), new Event7(), new Event8()
+  };
+
+  @Param({ "0", "1", "4", "8" })
+  public int depth;
+
+  private Bus bus;
+  private Object event;
+
+  @Setup public void setUp() {
+    bus = new Bus(ThreadEnforcer.ANY, "benchmark");
+    bus.register(new Subscriber());
+    event = EVENTS[depth];
+  }
+
+  @Benchmark public void post() {
+    bus.post(event);
+  }
+
+  public static class Event0 {
+  }
+
+  public static class Event1 extends Event0 {
+  }
+
+  public static class Event2 extends Event1 {
+  }
+
+  public static class Event3 extends Event2 {
+  }
+
+  public static class Event4 extends Event3 {
+  }
+
+  public static class Event5 extends Event4 {
+  }
+
+  public static class Event6 extends Event5 {
+  }
+
+  public static class Event7 extends Event6 {
+  }
+
+  public static class Event8 extends Event7 {
+  }
+
+  public static final class Subscriber {
+    int count;
+
+    @Subscribe public void onEvent(Event0 event) {
+      count++;
+    }
+  }
+}
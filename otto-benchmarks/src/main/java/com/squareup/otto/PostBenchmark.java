@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Bus#post(Object)} throughput for an increasing number of subscribers of the posted type.
+ *
+ * <p>Run with {@code -prof gc} to also report the allocation rate per post.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PostBenchmark {
+
+  @Param({ "1", "10", "100", "1000" })
+  public int subscribers;
+
+  @Param({ "ANNOTATED", "GENERATED" })
+  public BenchmarkFinder finder;
+
+  private Bus bus;
+  private final Event event = new Event();
+
+  @Setup public void setUp() {
+    bus = new Bus(ThreadEnforcer.ANY, "benchmark", finder.create());
+    for (int i = 0; i < subscribers; i++) {
+      bus.register(new Subscriber());
+    }
+  }
+
+  @Benchmark public void post() {
+    bus.post(event);
+  }
+
+  @Benchmark public void postDead() {
+    bus.post(this);
+  }
+
+  public static final class Event {
+  }
+
+  public static final class Subscriber {
+    int count;
+
+    @Subscribe public void onEvent(Event event) {
+      count++;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of a {@link Bus#register(Object)}/{@link Bus#unregister(Object)} round trip for a listener
+ * with many {@link Subscribe} methods, while a number of other listeners are already subscribed to the same types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegisterBenchmark {
+
+  @Param({ "0", "100", "1000" })
+  public int registered;
+
+  @Param({ "ANNOTATED", "GENERATED" })
+  public BenchmarkFinder finder;
+
+  private Bus bus;
+  private final Listener listener = new Listener();
+
+  @Setup public void setUp() {
+    bus = new Bus(ThreadEnforcer.ANY, "benchmark", finder.create());
+    for (int i = 0; i < registered; i++) {
+      bus.register(new Listener());
+    }
+  }
+
+  @Benchmark public void registerUnregister() {
+    bus.register(listener);
+    bus.unregister(listener);
+  }
+
+  public static final class Event0 {
+  }
+
+  public static final class Event1 {
+  }
+
+  public static final class Event2 {
+  }
+
+  public static final class Event3 {
+  }
+
+  public static final class Event4 {
+  }
+
+  public static final class Event5 {
+  }
+
+  public static final class Event6 {
+  }
+
+  public static final class Event7 {
+  }
+
+  public static final class Event8 {
+  }
+
+  public static final class Event9 {
+  }
+
+  public static final class Event10 {
+  }
+
+  public static final class Event11 {
+  }
+
+  public static final class Event12 {
+  }
+
+  public static final class Event13 {
+  }
+
+  public static final class Event14 {
+  }
+
+  public static final class Event15 {
+  }
+
+  public static final class Listener {
+    @Subscribe public void on0(Event0 event) {
+    }
+
+    @Subscribe public void on1(Event1 event) {
+    }
+
+    @Subscribe public void on2(Event2 event) {
+    }
+
+    @Subscribe public void on3(Event3 event) {
+    }
+
+    @Subscribe public void on4(Event4 event) {
+    }
+
+    @Subscribe public void on5(Event5 event) {
+    }
+
+    @Subscribe public void on6(Event6 event) {
+    }
+
+    @Subscribe public void on7(Event7 event) {
+    }
+
+    @Subscribe public void on8(Event8 event) {
+    }
+
+    @Subscribe public void on9(Event9 event) {
+    }
+
+    @Subscribe public void on10(Event10 event) {
+    }
+
+    @Subscribe public void on11(Event11 event) {
+    }
+
+    @Subscribe public void on12(Event12 event) {
+    }
+
+    @Subscribe public void on13(Event13 event) {
+    }
+
+    @Subscribe public void on14(Event14 event) {
+    }
+
+    @Subscribe public void on15(Event15 event) {
+    }
+  }
+}
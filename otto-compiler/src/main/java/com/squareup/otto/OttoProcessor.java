@@ -16,22 +16,30 @@
 
 package com.squareup.otto;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
-import javax.tools.JavaFileObject;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 import javax.validation.constraints.NotNull;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.util.*;
 
@@ -41,27 +49,57 @@ import java.util.*;
  * annotation and event producers according to {@link Produce} annotation.
  * </p>
  * <p>
- * This processor can generate {@link HandlerFinder} of two types: 'anonymous' where no reflection is used and 'reflective'
- * where actual method calls are done via reflection.<br/>
+ * Event producers always call producer methods directly, thus, {@link Produce} methods must be public.
+ * </p>
+ * <p>
+ * Generated {@link HandlerFinder} looks up the listener's class in a static table and jumps to the code for that class,
+ * so finding handlers takes constant time regardless of the number of listener classes.
+ * </p>
+ * <p>
+ * This processor can generate {@link HandlerFinder} of three types: 'anonymous' and 'dispatcher' where no reflection is
+ * used and 'reflective' where actual method calls are done via reflection.<br/>
  * The downside of 'anonymous' approach is that for each subscriber's method an anonymous class is generated.<br/>
+ * 'Dispatcher' approach generates one class per listener class which calls the subscriber's method selected by a
+ * switch, thus, it keeps the number of classes low.<br/>
  * 'Reflective' event handlers use reflection for delivering events, however, the lookup is done in a constant time by
  * function's name and event type.<br/>
  * By default, 'reflective' event handlers are generated, to change this use '-Aotto.generate' javac option
- * ('-Aotto.generate=anonymous' for anonymous and '-Aotto.generate=reflective' for reflective)
+ * ('-Aotto.generate=anonymous' for anonymous, '-Aotto.generate=dispatcher' for dispatcher and
+ * '-Aotto.generate=reflective' for reflective).<br/>
+ * Alternatively, '-Aotto.generate=index' writes only an index of subscriber's and producer's methods, a resource per
+ * listener class (see {@link IndexedHandlerFinder#getIndexResource(String)}), which is read by
+ * {@link IndexedHandlerFinder} at runtime. As no code is generated and resource names are unique, each module of an
+ * application can be processed separately and only the entry of a changed class is rewritten.
+ * </p>
+ * <p>
+ * By default, one {@link HandlerFinder} is generated for all listener classes of a compilation unit. With
+ * '-Aotto.finder=class' a {@link HandlerFinder} is generated for each listener class instead, these finders are found at
+ * runtime by {@link CompositeHandlerFinder}. Listeners may then be compiled in different modules and only the finder of
+ * a changed class is regenerated (the processor is 'isolating' for Gradle's incremental compilation).
  * </p>
  *
  * @author Sergey Solovyev
  */
 public final class OttoProcessor extends AbstractProcessor {
 
-  private static final byte[] BUFFER = new byte[4 * 1024];
   private static final Set<String> ANNOTATIONS = new HashSet<String>();
   private static final Set<String> OPTIONS = new HashSet<String>();
   private static final String OPTION_GENERATE = "otto.generate";
+  private static final String GENERATE_ANONYMOUS = "anonymous";
+  private static final String GENERATE_DISPATCHER = "dispatcher";
+  private static final String GENERATE_INDEX = "index";
+  private static final String GENERATE_REFLECTIVE = "reflective";
+  private static final String OPTION_FINDER = "otto.finder";
+  private static final String FINDER_SINGLE = "single";
+  private static final String FINDER_CLASS = "class";
+  private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+  private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
 
   static {
     ANNOTATIONS.add(Subscribe.class.getName());
+    ANNOTATIONS.add(Produce.class.getName());
     OPTIONS.add(OPTION_GENERATE);
+    OPTIONS.add(OPTION_FINDER);
   }
 
   @NotNull
@@ -70,7 +108,12 @@ public final class OttoProcessor extends AbstractProcessor {
   private Messager messager;
   @NotNull
   private Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methodsInClass = new HashMap<TypeElement, Map<TypeMirror, List<ExecutableElement>>>();
-  private boolean anonymous;
+  @NotNull
+  private Map<TypeElement, Map<TypeMirror, ExecutableElement>> producersInClass = new HashMap<TypeElement, Map<TypeMirror, ExecutableElement>>();
+  @NotNull
+  private String generate = GENERATE_REFLECTIVE;
+  @NotNull
+  private String finder = FINDER_SINGLE;
 
   public OttoProcessor() {
   }
@@ -93,16 +136,24 @@ public final class OttoProcessor extends AbstractProcessor {
     filer = env.getFiler();
     messager = env.getMessager();
     methodsInClass.clear();
+    producersInClass.clear();
     final Map<String, String> options = env.getOptions();
     final String generateOption = options.get(OPTION_GENERATE);
     if (generateOption == null) {
-      anonymous = false;
-    } else if ("anonymous".equals(generateOption)) {
-      anonymous = true;
-    } else if ("reflective".equals(generateOption)) {
-      anonymous = false;
+      generate = GENERATE_REFLECTIVE;
+    } else if (GENERATE_ANONYMOUS.equals(generateOption) || GENERATE_DISPATCHER.equals(generateOption)
+            || GENERATE_INDEX.equals(generateOption) || GENERATE_REFLECTIVE.equals(generateOption)) {
+      generate = generateOption;
     } else {
-      throw new IllegalArgumentException("Invalid value for 'otto.generate'. Expected: 'anonymous' or 'reflective', got: " + generateOption);
+      throw new IllegalArgumentException("Invalid value for 'otto.generate'. Expected: 'anonymous', 'dispatcher', 'index' or 'reflective', got: " + generateOption);
+    }
+    final String finderOption = options.get(OPTION_FINDER);
+    if (finderOption == null) {
+      finder = FINDER_SINGLE;
+    } else if (FINDER_SINGLE.equals(finderOption) || FINDER_CLASS.equals(finderOption)) {
+      finder = finderOption;
+    } else {
+      throw new IllegalArgumentException("Invalid value for 'otto.finder'. Expected: 'single' or 'class', got: " + finderOption);
     }
     info("OttoProcessor#init");
   }
@@ -116,9 +167,23 @@ public final class OttoProcessor extends AbstractProcessor {
     }
     try {
       final Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methods = collectMethods(env);
-      if (!methods.isEmpty()) {
+      final Map<TypeElement, Map<TypeMirror, ExecutableElement>> producers = collectProducers(env);
+      if (!methods.isEmpty() || !producers.isEmpty()) {
         methodsInClass.putAll(methods);
-        writeClasses(generateClass(methodsInClass));
+        producersInClass.putAll(producers);
+        if (GENERATE_INDEX.equals(generate)) {
+          // each entry depends only on its listener class, a class is processed in one round and is written once
+          for (TypeElement type : getListenerClasses(methods.keySet(), producers.keySet())) {
+            writeIndex(type, generateIndexResource(methods.get(type), producers.get(type)));
+          }
+        } else if (FINDER_CLASS.equals(finder)) {
+          // each finder depends only on its listener class, thus, the finders of other classes are not regenerated
+          for (TypeElement type : getListenerClasses(methods.keySet(), producers.keySet())) {
+            writeHandlerFinder(generateClassFinder(type, methods.get(type), producers.get(type)));
+          }
+        } else {
+          writeHandlerFinder(generateClass(methodsInClass, producersInClass));
+        }
       }
     } catch (ProcessingException e) {
       error(e.getMessage());
@@ -129,16 +194,166 @@ public final class OttoProcessor extends AbstractProcessor {
   }
 
   @NotNull
-  private TypeSpec generateClass(@NotNull Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methodsByClass) {
-    return TypeSpec.classBuilder("GeneratedHandlerFinder")
+  private TypeSpec generateClass(@NotNull Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methodsByClass,
+                                 @NotNull Map<TypeElement, Map<TypeMirror, ExecutableElement>> producersByClass) {
+    final List<TypeElement> listenerClasses = getListenerClasses(methodsByClass.keySet(), producersByClass.keySet());
+    final TypeSpec.Builder builder = TypeSpec.classBuilder("GeneratedHandlerFinder")
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addSuperinterface(HandlerFinder.class)
+            .addField(generateIndexField())
+            .addStaticBlock(generateIndex(listenerClasses))
+            .addMethod(generateFindAllProducers(listenerClasses, producersByClass))
+            .addMethod(generateFindAllSubscribers(listenerClasses, methodsByClass))
+            .addMethod(generateLookupMethod());
+    for (TypeElement type : listenerClasses) {
+      builder.addOriginatingElement(type);
+    }
+    if (GENERATE_DISPATCHER.equals(generate)) {
+      for (int i = 0; i < listenerClasses.size(); i++) {
+        final TypeElement type = listenerClasses.get(i);
+        final Map<TypeMirror, List<ExecutableElement>> methods = methodsByClass.get(type);
+        if (methods != null) {
+          builder.addType(generateDispatcher(i, type, getDispatchedMethods(methods)));
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Generates a {@link HandlerFinder} for a single listener class, it's found at runtime by {@link CompositeHandlerFinder}.
+   */
+  @NotNull
+  private TypeSpec generateClassFinder(@NotNull TypeElement type,
+                                       Map<TypeMirror, List<ExecutableElement>> methods,
+                                       Map<TypeMirror, ExecutableElement> producers) {
+    final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    final String className = CompositeHandlerFinder.getFinderClassName(binaryName).substring(getPackageName().length() + 1);
+    final MethodSpec.Builder findAllSubscribers = MethodSpec.methodBuilder("findAllSubscribers")
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(Object.class, "listener", Modifier.FINAL)
+            .returns(Map.class);
+    if (methods != null) {
+      findAllSubscribers.addCode(generateSubscribers(0, type, methods));
+    } else {
+      findAllSubscribers.addStatement("return $T.emptyMap()", Collections.class);
+    }
+    final MethodSpec.Builder findAllProducers = MethodSpec.methodBuilder("findAllProducers")
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(Object.class, "listener", Modifier.FINAL)
+            .returns(Map.class);
+    if (producers != null) {
+      findAllProducers.addCode(generateProducers(type, producers));
+    } else {
+      findAllProducers.addStatement("return $T.emptyMap()", Collections.class);
+    }
+    final TypeSpec.Builder builder = TypeSpec.classBuilder(className)
+            .addJavadoc("Finds subscribers and producers of {@link $T}.\n", type)
+            .addOriginatingElement(type)
             .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
             .addSuperinterface(HandlerFinder.class)
-            .addMethod(generateFindAllProducers())
-            .addMethod(generateFindAllSubscribers(methodsByClass))
-            .addMethod(generateLookupMethod())
+            .addMethod(findAllProducers.build())
+            .addMethod(findAllSubscribers.build());
+    if (GENERATE_REFLECTIVE.equals(generate) && methods != null) {
+      builder.addMethod(generateLookupMethod());
+    }
+    if (GENERATE_DISPATCHER.equals(generate) && methods != null) {
+      builder.addType(generateDispatcher(0, type, getDispatchedMethods(methods)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return subscriber methods of a listener class, position of a method in this list is the case label which selects
+   * it in the generated dispatcher.
+   */
+  @NotNull
+  private List<ExecutableElement> getDispatchedMethods(@NotNull Map<TypeMirror, List<ExecutableElement>> methodsByEventType) {
+    final List<ExecutableElement> result = new ArrayList<ExecutableElement>();
+    for (List<ExecutableElement> methods : methodsByEventType.values()) {
+      result.addAll(methods);
+    }
+    return result;
+  }
+
+  @NotNull
+  private String getDispatcherName(int index) {
+    return "Dispatcher" + index;
+  }
+
+  /** Generates a single {@link EventHandler} class which delivers events to all subscriber methods of {@code type}. */
+  @NotNull
+  private TypeSpec generateDispatcher(int index, @NotNull TypeElement type, @NotNull List<ExecutableElement> methods) {
+    final MethodSpec.Builder handleEvent = MethodSpec.methodBuilder("handleEvent")
+            .addModifiers(Modifier.PROTECTED)
+            .addParameter(Object.class, "listener")
+            .addParameter(Object.class, "event")
+            .addStatement("final $T target = ($T) listener", type, type)
+            .beginControlFlow("switch (method)");
+    for (int i = 0; i < methods.size(); i++) {
+      final ExecutableElement method = methods.get(i);
+      final TypeMirror eventType = method.getParameters().get(0).asType();
+      handleEvent.addCode("case $L:\n$>", i)
+              .addStatement("target.$N(($T) event)", method.getSimpleName(), eventType)
+              .addStatement("return")
+              .addCode("$<");
+    }
+    handleEvent.addCode("default:\n$>")
+            .addStatement("throw new $T(method)", AssertionError.class)
+            .addCode("$<")
+            .endControlFlow();
+    return TypeSpec.classBuilder(getDispatcherName(index))
+            .addJavadoc("Delivers events to subscriber methods of {@link $T}.\n", type)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .superclass(ClassName.get(getPackageName(), "GeneratedDispatcher"))
+            .addMethod(MethodSpec.constructorBuilder()
+                    .addParameter(Object.class, "listener")
+                    .addParameter(int.class, "method")
+                    .addParameter(int.class, "priority")
+                    .addParameter(ThreadMode.class, "threadMode")
+                    .addStatement("super(listener, method, priority, threadMode)")
+                    .build())
+            .addMethod(handleEvent.build())
             .build();
   }
 
+  /**
+   * @return all classes with subscribers or producers, ordered by name so that generated code is stable. Position of
+   * a class in this list is its index in the generated lookup table.
+   */
+  @NotNull
+  private List<TypeElement> getListenerClasses(@NotNull Set<TypeElement> subscriberClasses, @NotNull Set<TypeElement> producerClasses) {
+    final Set<TypeElement> classes = new HashSet<TypeElement>(subscriberClasses);
+    classes.addAll(producerClasses);
+    final List<TypeElement> result = new ArrayList<TypeElement>(classes);
+    Collections.sort(result, new Comparator<TypeElement>() {
+      @Override
+      public int compare(TypeElement l, TypeElement r) {
+        return l.getQualifiedName().toString().compareTo(r.getQualifiedName().toString());
+      }
+    });
+    return result;
+  }
+
+  @NotNull
+  private FieldSpec generateIndexField() {
+    // lookup table from listener class to a case label in findAllSubscribers/findAllProducers, registration cost
+    // doesn't depend on the number of listener classes
+    return FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(Map.class), ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)), ClassName.get(Integer.class)), "INDEX")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .build();
+  }
+
+  @NotNull
+  private CodeBlock generateIndex(@NotNull List<TypeElement> listenerClasses) {
+    final CodeBlock.Builder builder = CodeBlock.builder()
+            .addStatement("INDEX = new $T<$T<?>, $T>($L)", HashMap.class, Class.class, Integer.class, listenerClasses.size() * 4 / 3 + 1);
+    for (int i = 0; i < listenerClasses.size(); i++) {
+      builder.addStatement("INDEX.put($T.class, $L)", listenerClasses.get(i), i);
+    }
+    return builder.build();
+  }
+
   @NotNull
   private MethodSpec generateLookupMethod() {
     return MethodSpec.methodBuilder("lookupMethod")
@@ -157,77 +372,155 @@ public final class OttoProcessor extends AbstractProcessor {
   }
 
   @NotNull
-  private MethodSpec generateFindAllSubscribers(@NotNull Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methodsByClass) {
+  private MethodSpec generateFindAllSubscribers(@NotNull List<TypeElement> listenerClasses,
+                                                @NotNull Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methodsByClass) {
     final MethodSpec.Builder builder = MethodSpec.methodBuilder("findAllSubscribers")
             .addModifiers(Modifier.PUBLIC)
             .addParameter(Object.class, "listener", Modifier.FINAL)
-            .returns(Map.class);
-    for (Map.Entry<TypeElement, Map<TypeMirror, List<ExecutableElement>>> entry : methodsByClass.entrySet()) {
-      builder.addCode(generateSubscriber(entry.getKey(), entry.getValue())).addCode("\n");
+            .returns(Map.class)
+            .addStatement("final $T index = INDEX.get($N.getClass())", Integer.class, "listener")
+            .beginControlFlow("if (index == null)")
+            .addStatement("throw new IllegalArgumentException(\"Object with class name \" + $N.getClass() + \" is not supported\")", "listener")
+            .endControlFlow()
+            .beginControlFlow("switch (index)");
+    for (int i = 0; i < listenerClasses.size(); i++) {
+      final TypeElement type = listenerClasses.get(i);
+      final Map<TypeMirror, List<ExecutableElement>> methods = methodsByClass.get(type);
+      // classes with producers only are supported but have no subscribers
+      if (methods != null) {
+        builder.addCode(generateSubscriber(i, type, methods));
+      }
     }
-    builder.addStatement("throw new IllegalArgumentException(\"Object with class name \" + $N.getClass() + \" is not supported\")", "listener");
+    builder.addCode("default:\n$>")
+            .addStatement("return $T.emptyMap()", Collections.class)
+            .addCode("$<")
+            .endControlFlow();
     return builder.build();
   }
 
   @NotNull
-  private CodeBlock generateSubscriber(@NotNull TypeElement type, @NotNull Map<TypeMirror, List<ExecutableElement>> methodsByEventType) {
+  private CodeBlock generateSubscriber(int index, @NotNull TypeElement type, @NotNull Map<TypeMirror, List<ExecutableElement>> methodsByEventType) {
+    return CodeBlock.builder()
+            .add("// $T\n", type)
+            .beginControlFlow("case $L:", index)
+            .add(generateSubscribers(index, type, methodsByEventType))
+            .endControlFlow()
+            .build();
+  }
+
+  @NotNull
+  private CodeBlock generateSubscribers(int index, @NotNull TypeElement type, @NotNull Map<TypeMirror, List<ExecutableElement>> methodsByEventType) {
     final CodeBlock.Builder builder = CodeBlock.builder()
-            .beginControlFlow("if (listener.getClass().equals($T.class))", type)
             .addStatement("final $T<$T<?>, $T<$T>> handlers = new $T<$T<?>, $T<$T>>($L)", Map.class, Class.class, Set.class, EventHandler.class, HashMap.class, Class.class, Set.class, EventHandler.class, methodsByEventType.size());
     for (Map.Entry<TypeMirror, List<ExecutableElement>> entry : methodsByEventType.entrySet()) {
       final TypeMirror eventType = entry.getKey();
       final List<ExecutableElement> methods = entry.getValue();
-      builder.addStatement("handlers.put($T.class, $L)", eventType, generateEventHandlers(type, eventType, methods));
+      builder.addStatement("handlers.put($T.class, $L)", eventType, generateEventHandlers(index, type, eventType, methods));
     }
-    builder.addStatement("return handlers").endControlFlow();
+    builder.addStatement("return handlers");
     return builder.build();
   }
 
   @NotNull
-  private CodeBlock generateEventHandlers(@NotNull TypeElement type, @NotNull TypeMirror eventType, @NotNull List<ExecutableElement> methods) {
+  private CodeBlock generateEventHandlers(int index, @NotNull TypeElement type, @NotNull TypeMirror eventType, @NotNull List<ExecutableElement> methods) {
     final CodeBlock.Builder builder = CodeBlock.builder();
     if (methods.size() > 1) {
-      final CodeBlock handlersList = generateEventHandlersList(type, eventType, methods);
+      final CodeBlock handlersList = generateEventHandlersList(index, type, eventType, methods);
       builder.add("new $T<$T>($T.asList($L))", HashSet.class, EventHandler.class, Arrays.class, handlersList);
     } else {
-      final CodeBlock handler = generateHandler(type, eventType, methods.get(0));
+      final CodeBlock handler = generateHandler(index, type, eventType, methods.get(0));
       builder.add("$T.<$T>singleton($L)", Collections.class, EventHandler.class, handler);
     }
     return builder.build();
   }
 
   @NotNull
-  private CodeBlock generateEventHandlersList(@NotNull TypeElement type, @NotNull TypeMirror eventType, List<ExecutableElement> methods) {
+  private CodeBlock generateEventHandlersList(int index, @NotNull TypeElement type, @NotNull TypeMirror eventType, List<ExecutableElement> methods) {
     final CodeBlock.Builder builder = CodeBlock.builder();
     for (int i = 0; i < methods.size(); i++) {
       final ExecutableElement method = methods.get(i);
       if (i != 0) {
         builder.add(",");
       }
-      builder.add(generateHandler(type, eventType, method));
+      builder.add(generateHandler(index, type, eventType, method));
     }
     return builder.build();
   }
 
   @NotNull
-  private MethodSpec generateFindAllProducers() {
-    return MethodSpec.methodBuilder("findAllProducers")
+  private MethodSpec generateFindAllProducers(@NotNull List<TypeElement> listenerClasses,
+                                              @NotNull Map<TypeElement, Map<TypeMirror, ExecutableElement>> producersByClass) {
+    final MethodSpec.Builder builder = MethodSpec.methodBuilder("findAllProducers")
             .addModifiers(Modifier.PUBLIC)
             .addParameter(Object.class, "listener", Modifier.FINAL)
             .returns(Map.class)
+            .addStatement("final $T index = INDEX.get($N.getClass())", Integer.class, "listener")
+            .beginControlFlow("if (index == null)")
             .addStatement("return $T.emptyMap()", Collections.class)
+            .endControlFlow()
+            .beginControlFlow("switch (index)");
+    for (int i = 0; i < listenerClasses.size(); i++) {
+      final TypeElement type = listenerClasses.get(i);
+      final Map<TypeMirror, ExecutableElement> producers = producersByClass.get(type);
+      if (producers != null) {
+        builder.addCode(generateProducers(i, type, producers));
+      }
+    }
+    // classes without producers
+    builder.addCode("default:\n$>")
+            .addStatement("return $T.emptyMap()", Collections.class)
+            .addCode("$<")
+            .endControlFlow();
+    return builder.build();
+  }
+
+  @NotNull
+  private CodeBlock generateProducers(int index, @NotNull TypeElement type, @NotNull Map<TypeMirror, ExecutableElement> producersByEventType) {
+    return CodeBlock.builder()
+            .add("// $T\n", type)
+            .beginControlFlow("case $L:", index)
+            .add(generateProducers(type, producersByEventType))
+            .endControlFlow()
             .build();
   }
 
   @NotNull
-  private CodeBlock generateHandler(@NotNull TypeElement type, @NotNull TypeMirror eventType, @NotNull ExecutableElement method) {
-    if (anonymous) {
-      return CodeBlock.builder().add("\nnew $L(listener){public void handleEvent(Object event){(($T)listener).$N(($T)event);}}", "GeneratedEventHandler", type, method.getSimpleName(), eventType).build();
+  private CodeBlock generateProducers(@NotNull TypeElement type, @NotNull Map<TypeMirror, ExecutableElement> producersByEventType) {
+    final CodeBlock.Builder builder = CodeBlock.builder()
+            .addStatement("final $T<$T<?>, $T> producers = new $T<$T<?>, $T>($L)", Map.class, Class.class, EventProducer.class, HashMap.class, Class.class, EventProducer.class, producersByEventType.size());
+    for (Map.Entry<TypeMirror, ExecutableElement> entry : producersByEventType.entrySet()) {
+      builder.addStatement("producers.put($T.class, $L)", entry.getKey(), generateProducer(type, entry.getValue()));
+    }
+    builder.addStatement("return producers");
+    return builder.build();
+  }
+
+  @NotNull
+  private CodeBlock generateProducer(@NotNull TypeElement type, @NotNull ExecutableElement method) {
+    return CodeBlock.builder().add("\nnew $L(listener){protected Object produce() throws Exception {return (($T)listener).$N();}}", "GeneratedEventProducer", type, method.getSimpleName()).build();
+  }
+
+  @NotNull
+  private CodeBlock generateHandler(int index, @NotNull TypeElement type, @NotNull TypeMirror eventType, @NotNull ExecutableElement method) {
+    if (GENERATE_DISPATCHER.equals(generate)) {
+      final int methodIndex = getDispatchedMethods(methodsInClass.get(type)).indexOf(method);
+      return CodeBlock.builder().add("\nnew $L(listener, $L, $L, $T.$L)", getDispatcherName(index), methodIndex, getPriority(method), ThreadMode.class, getThreadMode(method)).build();
+    } else if (GENERATE_ANONYMOUS.equals(generate)) {
+      return CodeBlock.builder().add("\nnew $L(listener, $L, $T.$L){protected void handleEvent(Object listener, Object event){(($T)listener).$N(($T)event);}}", "GeneratedEventHandler", getPriority(method), ThreadMode.class, getThreadMode(method), type, method.getSimpleName(), eventType).build();
     } else {
       return CodeBlock.builder().add("\nnew ReflectiveEventHandler(listener, lookupMethod($T.class, $S, $T.class))", type, method.getSimpleName(), eventType).build();
     }
   }
 
+  private int getPriority(@NotNull ExecutableElement method) {
+    return method.getAnnotation(Subscribe.class).priority();
+  }
+
+  @NotNull
+  private ThreadMode getThreadMode(@NotNull ExecutableElement method) {
+    return method.getAnnotation(Subscribe.class).thread();
+  }
+
   @NotNull
   private Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> collectMethods(@NotNull RoundEnvironment env) throws ProcessingException {
     final Map<TypeElement, Map<TypeMirror, List<ExecutableElement>>> methodsByClass = new HashMap<TypeElement, Map<TypeMirror, List<ExecutableElement>>>();
@@ -237,7 +530,7 @@ public final class OttoProcessor extends AbstractProcessor {
         throw new ProcessingException(e.getSimpleName() + " is annotated with @Subscribe but is not a method");
       }
       final ExecutableElement method = (ExecutableElement) e;
-      if (anonymous) {
+      if (!GENERATE_REFLECTIVE.equals(generate)) {
         // methods must be public as generated code will call it directly
         if (!method.getModifiers().contains(Modifier.PUBLIC)) {
           throw new ProcessingException("Method is not public: " + method.getSimpleName());
@@ -251,7 +544,7 @@ public final class OttoProcessor extends AbstractProcessor {
       if (parameters.size() > 1) {
         throw new ProcessingException("Too many arguments in: " + method.getSimpleName());
       }
-      if (anonymous) {
+      if (GENERATE_ANONYMOUS.equals(generate) || GENERATE_DISPATCHER.equals(generate)) {
         // method shouldn't throw checked exceptions
         final List<? extends TypeMirror> exceptions = method.getThrownTypes();
         if (exceptions != null && exceptions.size() > 0) {
@@ -263,24 +556,16 @@ public final class OttoProcessor extends AbstractProcessor {
       if (type == null) {
         throw new ProcessingException("Could not find a class for " + method.getSimpleName());
       }
-      // and it should be public
-      if (!type.getModifiers().contains(Modifier.PUBLIC)) {
-        throw new ProcessingException("Class is not public: " + type);
-      }
-      // as sell as all parent classes
-      TypeElement parentType = findEnclosingTypeElement(type);
-      while (parentType != null) {
-        if (!parentType.getModifiers().contains(Modifier.PUBLIC)) {
-          throw new ProcessingException("Class is not public: " + parentType);
-        }
-        parentType = findEnclosingTypeElement(parentType);
+      // and it should be public as well as all parent classes (unless generated code doesn't reference it)
+      if (!GENERATE_INDEX.equals(generate)) {
+        checkPublic(type);
       }
       final VariableElement event = parameters.get(0);
       final TypeMirror eventType = event.asType();
 
       Map<TypeMirror, List<ExecutableElement>> methodsInClass = methodsByClass.get(type);
       if (methodsInClass == null) {
-        methodsInClass = new HashMap<TypeMirror, List<ExecutableElement>>();
+        methodsInClass = new LinkedHashMap<TypeMirror, List<ExecutableElement>>();
         methodsByClass.put(type, methodsInClass);
       }
       List<ExecutableElement> methodsByType = methodsInClass.get(eventType);
@@ -293,45 +578,160 @@ public final class OttoProcessor extends AbstractProcessor {
     return methodsByClass;
   }
 
-  private void writeClasses(@NotNull TypeSpec handleFinderSpec) throws ProcessingException {
-    writeHandlerFinder(handleFinderSpec);
-    writeEventHandler();
+  @NotNull
+  private Map<TypeElement, Map<TypeMirror, ExecutableElement>> collectProducers(@NotNull RoundEnvironment env) throws ProcessingException {
+    final Types types = processingEnv.getTypeUtils();
+    final Map<TypeElement, Map<TypeMirror, ExecutableElement>> producersByClass = new HashMap<TypeElement, Map<TypeMirror, ExecutableElement>>();
+    for (Element e : env.getElementsAnnotatedWith(Produce.class)) {
+      // annotation must present only in methods
+      if (e.getKind() != ElementKind.METHOD) {
+        throw new ProcessingException(e.getSimpleName() + " is annotated with @Produce but is not a method");
+      }
+      final ExecutableElement method = (ExecutableElement) e;
+      // methods must be public as generated code will call it directly
+      if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+        throw new ProcessingException("Method is not public: " + method.getSimpleName());
+      }
+      // there must be no parameters
+      final List<? extends VariableElement> parameters = method.getParameters();
+      if (parameters != null && parameters.size() > 0) {
+        throw new ProcessingException("Method has @Produce annotation but requires arguments: " + method.getSimpleName());
+      }
+      final TypeMirror returnType = method.getReturnType();
+      if (returnType.getKind() == TypeKind.VOID) {
+        throw new ProcessingException("Method has @Produce annotation but has no return type: " + method.getSimpleName());
+      }
+      final Element returnElement = types.asElement(returnType);
+      if (returnElement != null && returnElement.getKind() == ElementKind.INTERFACE) {
+        throw new ProcessingException("Method has @Produce annotation on " + returnType
+                + " which is an interface. Producers must return a concrete class type: " + method.getSimpleName());
+      }
+      final TypeElement type = findEnclosingTypeElement(e);
+      // class should exist
+      if (type == null) {
+        throw new ProcessingException("Could not find a class for " + method.getSimpleName());
+      }
+      // and it should be public as well as all parent classes (unless generated code doesn't reference it)
+      if (!GENERATE_INDEX.equals(generate)) {
+        checkPublic(type);
+      }
+      final TypeMirror eventType = types.erasure(returnType);
+
+      Map<TypeMirror, ExecutableElement> producersInClass = producersByClass.get(type);
+      if (producersInClass == null) {
+        producersInClass = new LinkedHashMap<TypeMirror, ExecutableElement>();
+        producersByClass.put(type, producersInClass);
+      }
+      for (TypeMirror producedType : producersInClass.keySet()) {
+        if (types.isSameType(producedType, eventType)) {
+          throw new ProcessingException("Producer for type " + eventType + " has already been registered in " + type);
+        }
+      }
+      producersInClass.put(eventType, method);
+    }
+    return producersByClass;
+  }
+
+  private void checkPublic(@NotNull TypeElement type) throws ProcessingException {
+    TypeElement parentType = type;
+    while (parentType != null) {
+      if (!parentType.getModifiers().contains(Modifier.PUBLIC)) {
+        throw new ProcessingException("Class is not public: " + parentType);
+      }
+      parentType = findEnclosingTypeElement(parentType);
+    }
   }
 
-  private void writeEventHandler() throws ProcessingException {
-    InputStream from = null;
-    OutputStream to = null;
-    JavaFileObject file = null;
+  /**
+   * Generates the index entry of a listener class read by {@link IndexedHandlerFinder}: a line per method,
+   * {@code name(eventType)} for subscribers and {@code name()} for producers.
+   */
+  @NotNull
+  private String generateIndexResource(Map<TypeMirror, List<ExecutableElement>> methods,
+                                       Map<TypeMirror, ExecutableElement> producers) throws ProcessingException {
+    final List<String> descriptors = new ArrayList<String>();
+    if (methods != null) {
+      for (Map.Entry<TypeMirror, List<ExecutableElement>> e : methods.entrySet()) {
+        final String eventType = getClassName(e.getKey());
+        for (ExecutableElement method : e.getValue()) {
+          descriptors.add(method.getSimpleName() + "(" + eventType + ")");
+        }
+      }
+    }
+    if (producers != null) {
+      for (ExecutableElement method : producers.values()) {
+        descriptors.add(method.getSimpleName() + "()");
+      }
+    }
+    Collections.sort(descriptors);
+    final StringBuilder result = new StringBuilder();
+    result.append("# Generated by ").append(OttoProcessor.class.getName()).append(", do not edit.\n");
+    for (String descriptor : descriptors) {
+      result.append(descriptor).append('\n');
+    }
+    return result.toString();
+  }
+
+  /** @return name of the erased type as accepted by {@link Class#forName(String)} */
+  @NotNull
+  private String getClassName(@NotNull TypeMirror type) throws ProcessingException {
+    final TypeMirror erasedType = processingEnv.getTypeUtils().erasure(type);
+    switch (erasedType.getKind()) {
+      case DECLARED:
+        final TypeElement element = (TypeElement) ((DeclaredType) erasedType).asElement();
+        return processingEnv.getElementUtils().getBinaryName(element).toString();
+      case ARRAY:
+        return "[" + getComponentName(((ArrayType) erasedType).getComponentType());
+      default:
+        throw new ProcessingException("Event type must be a class or an array: " + type);
+    }
+  }
+
+  @NotNull
+  private String getComponentName(@NotNull TypeMirror type) throws ProcessingException {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return "Z";
+      case BYTE:
+        return "B";
+      case CHAR:
+        return "C";
+      case SHORT:
+        return "S";
+      case INT:
+        return "I";
+      case LONG:
+        return "J";
+      case FLOAT:
+        return "F";
+      case DOUBLE:
+        return "D";
+      case ARRAY:
+        return "[" + getComponentName(((ArrayType) type).getComponentType());
+      default:
+        return "L" + getClassName(type) + ";";
+    }
+  }
+
+  private void writeIndex(@NotNull TypeElement type, @NotNull String content) throws ProcessingException {
+    final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    Writer writer = null;
+    FileObject file = null;
     try {
-      from = OttoProcessor.class.getResourceAsStream("/com/squareup/otto/GeneratedEventHandler.java");
-      file = filer.createSourceFile(getPackageName() + ".GeneratedEventHandler");
-      to = file.openOutputStream();
-      copy(from, to);
+      file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", IndexedHandlerFinder.getIndexResource(binaryName), type);
+      writer = file.openWriter();
+      writer.write(content);
       file = null;
     } catch (IOException e) {
       throw new ProcessingException(e);
     } finally {
-      close(from);
-      close(to);
+      close(writer);
       if (file != null) {
         file.delete();
       }
     }
   }
 
-  public static long copy(@NotNull InputStream from, @NotNull OutputStream to) throws IOException {
-    long total = 0;
-    while (true) {
-      final int r = from.read(BUFFER);
-      if (r == -1) {
-        break;
-      }
-      to.write(BUFFER, 0, r);
-      total += r;
-    }
-    return total;
-  }
-
   private void close(@NotNull Closeable c) {
     if (c == null) {
       return;
@@ -372,7 +772,15 @@ public final class OttoProcessor extends AbstractProcessor {
 
   @Override
   public Set<String> getSupportedOptions() {
-    return OPTIONS;
+    final Set<String> options = new HashSet<String>(OPTIONS);
+    // Gradle asks dynamic processors (see META-INF/gradle/incremental.annotation.processors) for the kind of
+    // incremental processing: a finder or an index entry per listener class depends only on that class
+    if (FINDER_CLASS.equals(finder) || GENERATE_INDEX.equals(generate)) {
+      options.add(GRADLE_ISOLATING);
+    } else {
+      options.add(GRADLE_AGGREGATING);
+    }
+    return options;
   }
 
   @Override
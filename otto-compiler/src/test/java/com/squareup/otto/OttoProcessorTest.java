@@ -0,0 +1,568 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squareup.otto;
+
+import com.google.common.base.Throwables;
+import com.google.testing.compile.JavaFileObjects;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OttoProcessorTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final JavaFileObject LISTENER = JavaFileObjects.forSourceLines("test.Listener",
+      "package test;",
+      "",
+      "import com.squareup.otto.Produce;",
+      "import com.squareup.otto.Subscribe;",
+      "",
+      "public class Listener {",
+      "  @Subscribe public void onString(String event) {",
+      "  }",
+      "",
+      "  @Produce public Integer produceInteger() {",
+      "    return 42;",
+      "  }",
+      "}");
+
+  @Test public void anonymousProducerCallsMethodDirectly() {
+    JavaFileObject expected = JavaFileObjects.forSourceLines("com.squareup.otto.GeneratedHandlerFinder",
+        "package com.squareup.otto;",
+        "",
+        "import java.lang.Class;",
+        "import java.lang.IllegalArgumentException;",
+        "import java.lang.Integer;",
+        "import java.lang.NoSuchMethodException;",
+        "import java.lang.Object;",
+        "import java.lang.String;",
+        "import java.lang.reflect.Method;",
+        "import java.util.Collections;",
+        "import java.util.HashMap;",
+        "import java.util.Map;",
+        "import java.util.Set;",
+        "import test.Listener;",
+        "",
+        "public final class GeneratedHandlerFinder implements HandlerFinder {",
+        "  private static final Map<Class<?>, Integer> INDEX;",
+        "",
+        "  static {",
+        "    INDEX = new HashMap<Class<?>, Integer>(2);",
+        "    INDEX.put(Listener.class, 0);",
+        "  }",
+        "",
+        "  public Map findAllProducers(final Object listener) {",
+        "    final Integer index = INDEX.get(listener.getClass());",
+        "    if (index == null) {",
+        "      return Collections.emptyMap();",
+        "    }",
+        "    switch (index) {",
+        "      case 0: {",
+        "        final Map<Class<?>, EventProducer> producers = new HashMap<Class<?>, EventProducer>(1);",
+        "        producers.put(Integer.class, new GeneratedEventProducer(listener) {",
+        "          protected Object produce() throws Exception {",
+        "            return ((Listener) listener).produceInteger();",
+        "          }",
+        "        });",
+        "        return producers;",
+        "      }",
+        "      default:",
+        "        return Collections.emptyMap();",
+        "    }",
+        "  }",
+        "",
+        "  public Map findAllSubscribers(final Object listener) {",
+        "    final Integer index = INDEX.get(listener.getClass());",
+        "    if (index == null) {",
+        "      throw new IllegalArgumentException(\"Object with class name \" + listener.getClass()"
+            + " + \" is not supported\");",
+        "    }",
+        "    switch (index) {",
+        "      case 0: {",
+        "        final Map<Class<?>, Set<EventHandler>> handlers = new HashMap<Class<?>, Set<EventHandler>>(1);",
+        "        handlers.put(String.class, Collections.<EventHandler>singleton(",
+        "            new GeneratedEventHandler(listener, 0, ThreadMode.POSTING) {",
+        "              protected void handleEvent(Object listener, Object event) {",
+        "                ((Listener) listener).onString((String) event);",
+        "              }",
+        "            }));",
+        "        return handlers;",
+        "      }",
+        "      default:",
+        "        return Collections.emptyMap();",
+        "    }",
+        "  }",
+        "",
+        "  public static Method lookupMethod(Class type, String methodName, Class eventType) {",
+        "    try {",
+        "      return type.getDeclaredMethod(methodName, eventType);",
+        "    } catch (NoSuchMethodException e) {",
+        "      throw new IllegalArgumentException(e);",
+        "    }",
+        "  }",
+        "}");
+    assertAbout(javaSource()).that(LISTENER)
+        .withCompilerOptions("-Aotto.generate=anonymous")
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .and().generatesSources(expected);
+  }
+
+  @Test public void nonPublicProducerIsRejected() {
+    assertProducerRejected("Integer produce() { return 42; }", "Method is not public: produce");
+  }
+
+  @Test public void producerWithArgumentsIsRejected() {
+    assertProducerRejected("public Integer produce(String s) { return 42; }",
+        "Method has @Produce annotation but requires arguments: produce");
+  }
+
+  @Test public void voidProducerIsRejected() {
+    assertProducerRejected("public void produce() { }",
+        "Method has @Produce annotation but has no return type: produce");
+  }
+
+  @Test public void producerOfInterfaceIsRejected() {
+    assertProducerRejected("public Runnable produce() { return null; }",
+        "Method has @Produce annotation on java.lang.Runnable which is an interface");
+  }
+
+  @Test public void secondProducerOfTypeIsRejected() {
+    assertProducerRejected("public Integer produce() { return 42; }"
+            + " @Produce public Integer produceAgain() { return 1; }",
+        "Producer for type java.lang.Integer has already been registered in test.Producer");
+  }
+
+  @Test public void listenerClassesAreLookedUpInIndexOrderedByName() {
+    JavaFileObject second = JavaFileObjects.forSourceLines("test.Second",
+        "package test;",
+        "",
+        "import com.squareup.otto.Subscribe;",
+        "",
+        "public class Second {",
+        "  @Subscribe public void onString(String event) {",
+        "  }",
+        "}");
+    JavaFileObject first = JavaFileObjects.forSourceLines("test.First",
+        "package test;",
+        "",
+        "import com.squareup.otto.Produce;",
+        "",
+        "public class First {",
+        "  @Produce public Long produceLong() {",
+        "    return 1L;",
+        "  }",
+        "}");
+    JavaFileObject expected = JavaFileObjects.forSourceLines("com.squareup.otto.GeneratedHandlerFinder",
+        "package com.squareup.otto;",
+        "",
+        "import java.lang.Class;",
+        "import java.lang.IllegalArgumentException;",
+        "import java.lang.Integer;",
+        "import java.lang.Long;",
+        "import java.lang.NoSuchMethodException;",
+        "import java.lang.Object;",
+        "import java.lang.String;",
+        "import java.lang.reflect.Method;",
+        "import java.util.Collections;",
+        "import java.util.HashMap;",
+        "import java.util.Map;",
+        "import java.util.Set;",
+        "import test.First;",
+        "import test.Second;",
+        "",
+        "public final class GeneratedHandlerFinder implements HandlerFinder {",
+        "  private static final Map<Class<?>, Integer> INDEX;",
+        "",
+        "  static {",
+        "    INDEX = new HashMap<Class<?>, Integer>(3);",
+        "    INDEX.put(First.class, 0);",
+        "    INDEX.put(Second.class, 1);",
+        "  }",
+        "",
+        "  public Map findAllProducers(final Object listener) {",
+        "    final Integer index = INDEX.get(listener.getClass());",
+        "    if (index == null) {",
+        "      return Collections.emptyMap();",
+        "    }",
+        "    switch (index) {",
+        "      case 0: {",
+        "        final Map<Class<?>, EventProducer> producers = new HashMap<Class<?>, EventProducer>(1);",
+        "        producers.put(Long.class, new GeneratedEventProducer(listener) {",
+        "          protected Object produce() throws Exception {",
+        "            return ((First) listener).produceLong();",
+        "          }",
+        "        });",
+        "        return producers;",
+        "      }",
+        "      default:",
+        "        return Collections.emptyMap();",
+        "    }",
+        "  }",
+        "",
+        "  public Map findAllSubscribers(final Object listener) {",
+        "    final Integer index = INDEX.get(listener.getClass());",
+        "    if (index == null) {",
+        "      throw new IllegalArgumentException(\"Object with class name \" + listener.getClass()"
+            + " + \" is not supported\");",
+        "    }",
+        "    switch (index) {",
+        "      case 1: {",
+        "        final Map<Class<?>, Set<EventHandler>> handlers = new HashMap<Class<?>, Set<EventHandler>>(1);",
+        "        handlers.put(String.class, Collections.<EventHandler>singleton(",
+        "            new ReflectiveEventHandler(listener, lookupMethod(Second.class, \"onString\", String.class))));",
+        "        return handlers;",
+        "      }",
+        "      default:",
+        "        return Collections.emptyMap();",
+        "    }",
+        "  }",
+        "",
+        "  public static Method lookupMethod(Class type, String methodName, Class eventType) {",
+        "    try {",
+        "      return type.getDeclaredMethod(methodName, eventType);",
+        "    } catch (NoSuchMethodException e) {",
+        "      throw new IllegalArgumentException(e);",
+        "    }",
+        "  }",
+        "}");
+    assertAbout(javaSources()).that(Arrays.asList(second, first))
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .and().generatesSources(expected);
+  }
+
+  @Test public void listenerClassReferencedByFinderMustBePublic() {
+    JavaFileObject source = JavaFileObjects.forSourceLines("test.Outer",
+        "package test;",
+        "",
+        "import com.squareup.otto.Subscribe;",
+        "",
+        "public class Outer {",
+        "  static class Listener {",
+        "    @Subscribe public void onString(String event) {",
+        "    }",
+        "  }",
+        "}");
+    assertAbout(javaSource()).that(source)
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .withWarningContaining("Class is not public: test.Outer.Listener");
+  }
+
+  @Test public void dispatcherSelectsMethodBySwitch() {
+    JavaFileObject source = JavaFileObjects.forSourceLines("test.Listener",
+        "package test;",
+        "",
+        "import com.squareup.otto.Subscribe;",
+        "import com.squareup.otto.ThreadMode;",
+        "",
+        "public class Listener {",
+        "  @Subscribe(priority = 5) public void onString(String event) {",
+        "  }",
+        "",
+        "  @Subscribe(thread = ThreadMode.BACKGROUND) public void onInteger(Integer event) {",
+        "  }",
+        "}");
+    JavaFileObject expected = JavaFileObjects.forSourceLines("com.squareup.otto.GeneratedHandlerFinder",
+        "package com.squareup.otto;",
+        "",
+        "import java.lang.AssertionError;",
+        "import java.lang.Class;",
+        "import java.lang.IllegalArgumentException;",
+        "import java.lang.Integer;",
+        "import java.lang.NoSuchMethodException;",
+        "import java.lang.Object;",
+        "import java.lang.String;",
+        "import java.lang.reflect.Method;",
+        "import java.util.Collections;",
+        "import java.util.HashMap;",
+        "import java.util.Map;",
+        "import java.util.Set;",
+        "import test.Listener;",
+        "",
+        "public final class GeneratedHandlerFinder implements HandlerFinder {",
+        "  private static final Map<Class<?>, Integer> INDEX;",
+        "",
+        "  static {",
+        "    INDEX = new HashMap<Class<?>, Integer>(2);",
+        "    INDEX.put(Listener.class, 0);",
+        "  }",
+        "",
+        "  public Map findAllProducers(final Object listener) {",
+        "    final Integer index = INDEX.get(listener.getClass());",
+        "    if (index == null) {",
+        "      return Collections.emptyMap();",
+        "    }",
+        "    switch (index) {",
+        "      default:",
+        "        return Collections.emptyMap();",
+        "    }",
+        "  }",
+        "",
+        "  public Map findAllSubscribers(final Object listener) {",
+        "    final Integer index = INDEX.get(listener.getClass());",
+        "    if (index == null) {",
+        "      throw new IllegalArgumentException(\"Object with class name \" + listener.getClass()"
+            + " + \" is not supported\");",
+        "    }",
+        "    switch (index) {",
+        "      case 0: {",
+        "        final Map<Class<?>, Set<EventHandler>> handlers = new HashMap<Class<?>, Set<EventHandler>>(2);",
+        "        handlers.put(String.class, Collections.<EventHandler>singleton(",
+        "            new Dispatcher0(listener, 0, 5, ThreadMode.POSTING)));",
+        "        handlers.put(Integer.class, Collections.<EventHandler>singleton(",
+        "            new Dispatcher0(listener, 1, 0, ThreadMode.BACKGROUND)));",
+        "        return handlers;",
+        "      }",
+        "      default:",
+        "        return Collections.emptyMap();",
+        "    }",
+        "  }",
+        "",
+        "  public static Method lookupMethod(Class type, String methodName, Class eventType) {",
+        "    try {",
+        "      return type.getDeclaredMethod(methodName, eventType);",
+        "    } catch (NoSuchMethodException e) {",
+        "      throw new IllegalArgumentException(e);",
+        "    }",
+        "  }",
+        "",
+        "  private static final class Dispatcher0 extends GeneratedDispatcher {",
+        "    Dispatcher0(Object listener, int method, int priority, ThreadMode threadMode) {",
+        "      super(listener, method, priority, threadMode);",
+        "    }",
+        "",
+        "    protected void handleEvent(Object listener, Object event) {",
+        "      final Listener target = (Listener) listener;",
+        "      switch (method) {",
+        "        case 0:",
+        "          target.onString((String) event);",
+        "          return;",
+        "        case 1:",
+        "          target.onInteger((Integer) event);",
+        "          return;",
+        "        default:",
+        "          throw new AssertionError(method);",
+        "      }",
+        "    }",
+        "  }",
+        "}");
+    assertAbout(javaSource()).that(source)
+        .withCompilerOptions("-Aotto.generate=dispatcher")
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .and().generatesSources(expected);
+  }
+
+  @Test public void dispatchedSubscriberMustBePublic() {
+    assertSubscriberRejected("dispatcher", "void onString(String event) { }", "Method is not public: onString");
+  }
+
+  @Test public void dispatchedSubscriberMustNotThrowCheckedExceptions() {
+    assertSubscriberRejected("dispatcher", "public void onString(String event) throws Exception { }",
+        "Method shouldn't throw exceptions: onString");
+  }
+
+  @Test public void subscriberWithoutArgumentsIsRejected() {
+    assertSubscriberRejected("dispatcher", "public void onNothing() { }", "Too few arguments in: onNothing");
+  }
+
+  @Test public void subscriberWithTwoArgumentsIsRejected() {
+    assertSubscriberRejected("dispatcher", "public void onTwo(String first, String second) { }",
+        "Too many arguments in: onTwo");
+  }
+
+  @Test public void indexIsWrittenToResourceOfEachListenerClass() {
+    JavaFileObject outer = JavaFileObjects.forSourceLines("test.Outer",
+        "package test;",
+        "",
+        "import com.squareup.otto.Produce;",
+        "import com.squareup.otto.Subscribe;",
+        "",
+        "public class Outer {",
+        "  @Subscribe public void onString(String event) {",
+        "  }",
+        "",
+        "  static class Listener {",
+        "    @Subscribe public void onIntegers(Integer[] event) {",
+        "    }",
+        "",
+        "    @Subscribe public void onString(String event) {",
+        "    }",
+        "",
+        "    @Produce public Long produceLong() {",
+        "      return 1L;",
+        "    }",
+        "  }",
+        "}");
+    assertAbout(javaSource()).that(outer)
+        .withCompilerOptions("-Aotto.generate=index")
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .and().generatesFileNamed(StandardLocation.CLASS_OUTPUT, "", "META-INF/otto/test.Outer")
+        .withStringContents(UTF_8, "# Generated by com.squareup.otto.OttoProcessor, do not edit.\n"
+            + "onString(java.lang.String)\n")
+        .and().generatesFileNamed(StandardLocation.CLASS_OUTPUT, "", "META-INF/otto/test.Outer$Listener")
+        .withStringContents(UTF_8, "# Generated by com.squareup.otto.OttoProcessor, do not edit.\n"
+            + "onIntegers([Ljava.lang.Integer;)\n"
+            + "onString(java.lang.String)\n"
+            + "produceLong()\n");
+  }
+
+  @Test public void finderIsGeneratedForEachListenerClass() {
+    JavaFileObject source = JavaFileObjects.forSourceLines("test.Listener",
+        "package test;",
+        "",
+        "import com.squareup.otto.Produce;",
+        "import com.squareup.otto.Subscribe;",
+        "",
+        "public class Listener {",
+        "  @Subscribe public void onString(String event) {",
+        "  }",
+        "",
+        "  public static class Producer {",
+        "    @Produce public Integer produceInteger() {",
+        "      return 42;",
+        "    }",
+        "  }",
+        "}");
+    JavaFileObject listenerFinder = JavaFileObjects.forSourceLines("com.squareup.otto.HandlerFinder_test_Listener",
+        "package com.squareup.otto;",
+        "",
+        "import java.lang.Class;",
+        "import java.lang.Object;",
+        "import java.lang.String;",
+        "import java.util.Collections;",
+        "import java.util.HashMap;",
+        "import java.util.Map;",
+        "import java.util.Set;",
+        "import test.Listener;",
+        "",
+        "public final class HandlerFinder_test_Listener implements HandlerFinder {",
+        "  public Map findAllProducers(final Object listener) {",
+        "    return Collections.emptyMap();",
+        "  }",
+        "",
+        "  public Map findAllSubscribers(final Object listener) {",
+        "    final Map<Class<?>, Set<EventHandler>> handlers = new HashMap<Class<?>, Set<EventHandler>>(1);",
+        "    handlers.put(String.class, Collections.<EventHandler>singleton(",
+        "        new GeneratedEventHandler(listener, 0, ThreadMode.POSTING) {",
+        "          protected void handleEvent(Object listener, Object event) {",
+        "            ((Listener) listener).onString((String) event);",
+        "          }",
+        "        }));",
+        "    return handlers;",
+        "  }",
+        "}");
+    JavaFileObject producerFinder =
+        JavaFileObjects.forSourceLines("com.squareup.otto.HandlerFinder_test_Listener$Producer",
+            "package com.squareup.otto;",
+            "",
+            "import java.lang.Class;",
+            "import java.lang.Integer;",
+            "import java.lang.Object;",
+            "import java.util.Collections;",
+            "import java.util.HashMap;",
+            "import java.util.Map;",
+            "import test.Listener;",
+            "",
+            "public final class HandlerFinder_test_Listener$Producer implements HandlerFinder {",
+            "  public Map findAllProducers(final Object listener) {",
+            "    final Map<Class<?>, EventProducer> producers = new HashMap<Class<?>, EventProducer>(1);",
+            "    producers.put(Integer.class, new GeneratedEventProducer(listener) {",
+            "      protected Object produce() throws Exception {",
+            "        return ((Listener.Producer) listener).produceInteger();",
+            "      }",
+            "    });",
+            "    return producers;",
+            "  }",
+            "",
+            "  public Map findAllSubscribers(final Object listener) {",
+            "    return Collections.emptyMap();",
+            "  }",
+            "}");
+    assertAbout(javaSource()).that(source)
+        .withCompilerOptions("-Aotto.finder=class", "-Aotto.generate=anonymous")
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .and().generatesSources(listenerFinder, producerFinder);
+  }
+
+  @Test public void finderNameIsDerivedFromListenerClassName() {
+    assertEquals("com.squareup.otto.HandlerFinder_test_Listener$Producer",
+        CompositeHandlerFinder.getFinderClassName("test.Listener$Producer"));
+    assertEquals("com.squareup.otto.HandlerFinder_test__util_Listener",
+        CompositeHandlerFinder.getFinderClassName("test_util.Listener"));
+  }
+
+  @Test public void invalidFinderOptionFails() {
+    try {
+      assertAbout(javaSource()).that(LISTENER)
+          .withCompilerOptions("-Aotto.finder=module")
+          .processedWith(new OttoProcessor())
+          .compilesWithoutError();
+      fail("Unknown finder option should not be accepted.");
+    } catch (RuntimeException expected) {
+      assertTrue(Throwables.getStackTraceAsString(expected).contains("Invalid value for 'otto.finder'"));
+    }
+  }
+
+  /** Errors of the processor are reported as warnings, and no finder is generated. */
+  private static void assertProducerRejected(String producer, String message) {
+    JavaFileObject source = JavaFileObjects.forSourceLines("test.Producer",
+        "package test;",
+        "",
+        "import com.squareup.otto.Produce;",
+        "",
+        "public class Producer {",
+        "  @Produce " + producer,
+        "}");
+    assertAbout(javaSource()).that(source)
+        .withCompilerOptions("-Aotto.generate=anonymous")
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .withWarningContaining(message);
+  }
+
+  private static void assertSubscriberRejected(String generate, String subscriber, String message) {
+    JavaFileObject source = JavaFileObjects.forSourceLines("test.Listener",
+        "package test;",
+        "",
+        "import com.squareup.otto.Subscribe;",
+        "",
+        "public class Listener {",
+        "  @Subscribe " + subscriber,
+        "}");
+    assertAbout(javaSource()).that(source)
+        .withCompilerOptions("-Aotto.generate=" + generate)
+        .processedWith(new OttoProcessor())
+        .compilesWithoutError()
+        .withWarningContaining(message);
+  }
+}
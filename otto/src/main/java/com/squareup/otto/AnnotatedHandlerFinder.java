@@ -36,32 +36,50 @@ import java.util.concurrent.ConcurrentMap;
  */
 final class AnnotatedHandlerFinder {
 
-  /** Cache event bus producer methods for each class. */
-  private static final ConcurrentMap<Class<?>, Map<Class<?>, Method>> PRODUCERS_CACHE =
-    new ConcurrentHashMap<Class<?>, Map<Class<?>, Method>>();
-
-  /** Cache event bus subscriber methods for each class. */
-  private static final ConcurrentMap<Class<?>, Map<Class<?>, Set<Method>>> SUBSCRIBERS_CACHE =
-    new ConcurrentHashMap<Class<?>, Map<Class<?>, Set<Method>>>();
-
-  private static void loadAnnotatedProducerMethods(Class<?> listenerClass,
-      Map<Class<?>, Method> producerMethods) {
-    Map<Class<?>, Set<Method>> subscriberMethods = new HashMap<Class<?>, Set<Method>>();
-    loadAnnotatedMethods(listenerClass, producerMethods, subscriberMethods);
+  /**
+   * Cache event bus producer and subscriber methods for each class, including the methods inherited from its
+   * superclasses. Each class is scanned at most once, even if it is registered concurrently from several threads.
+   */
+  private static final ConcurrentMap<Class<?>, ListenerMethods> METHODS_CACHE =
+    new ConcurrentHashMap<Class<?>, ListenerMethods>();
+
+  /**
+   * Returns the loaded methods of the specified class. The first caller wins the race to create the entry, the
+   * following callers wait until it is loaded and reuse it.
+   */
+  private static ListenerMethods getListenerMethods(Class<?> listenerClass) {
+    ListenerMethods methods = METHODS_CACHE.get(listenerClass);
+    if (methods == null) {
+      final ListenerMethods newMethods = new ListenerMethods(listenerClass);
+      methods = METHODS_CACHE.putIfAbsent(listenerClass, newMethods);
+      if (methods == null) {
+        methods = newMethods;
+      }
+    }
+    return methods.load();
   }
 
-  private static void loadAnnotatedSubscriberMethods(Class<?> listenerClass,
-      Map<Class<?>, Set<Method>> subscriberMethods) {
-    Map<Class<?>, Method> producerMethods = new HashMap<Class<?>, Method>();
-    loadAnnotatedMethods(listenerClass, producerMethods, subscriberMethods);
+  /**
+   * Classes of the platform can't declare {@link Produce} or {@link Subscribe} methods, thus, they are not scanned.
+   * This also avoids expensive (and on some platforms failing) reflection on framework base classes.
+   */
+  static boolean isPlatformClass(Class<?> clazz) {
+    final String name = clazz.getName();
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.");
   }
 
   /**
-   * Load all methods annotated with {@link Produce} or {@link Subscribe} into their respective caches for the
-   * specified class.
+   * Load all methods annotated with {@link Produce} or {@link Subscribe} of the specified class into the given maps.
+   * Only methods declared in the class itself are scanned, inherited methods are taken from the (cached) indexes of
+   * the superclass.
    */
   private static void loadAnnotatedMethods(Class<?> listenerClass,
       Map<Class<?>, Method> producerMethods, Map<Class<?>, Set<Method>> subscriberMethods) {
+    final Class<?> superclass = listenerClass.getSuperclass();
+    if (superclass == null || isPlatformClass(listenerClass)) {
+      return;
+    }
+
     for (Method method : listenerClass.getDeclaredMethods()) {
       // The compiler sometimes creates synthetic bridge methods as part of the
       // type erasure process. As of JDK8 these methods now include the same
@@ -77,11 +95,8 @@ final class AnnotatedHandlerFinder {
               + parameterTypes.length + " arguments.  Methods must require a single argument.");
         }
 
+        // subscriptions to interfaces are checked by the bus, see Bus#setInterfaceDispatch(boolean)
         Class<?> eventType = parameterTypes[0];
-        if (eventType.isInterface()) {
-          throw new IllegalArgumentException("Method " + method + " has @Subscribe annotation on " + eventType
-              + " which is an interface.  Subscription must be on a concrete class type.");
-        }
 
         if ((method.getModifiers() & Modifier.PUBLIC) == 0) {
           throw new IllegalArgumentException("Method " + method + " has @Subscribe annotation on " + eventType
@@ -126,20 +141,66 @@ final class AnnotatedHandlerFinder {
       }
     }
 
-    PRODUCERS_CACHE.put(listenerClass, producerMethods);
-    SUBSCRIBERS_CACHE.put(listenerClass, subscriberMethods);
+    final ListenerMethods inherited = getListenerMethods(superclass);
+    inheritProducerMethods(inherited.producerMethods, producerMethods);
+    inheritSubscriberMethods(inherited.subscriberMethods, subscriberMethods);
+  }
+
+  /**
+   * Adds producers of the superclass to the producers declared in a class. A producer overridden in the class
+   * replaces the superclass' producer.
+   */
+  static void inheritProducerMethods(Map<Class<?>, Method> inherited, Map<Class<?>, Method> producerMethods) {
+    for (Map.Entry<Class<?>, Method> e : inherited.entrySet()) {
+      final Class<?> eventType = e.getKey();
+      final Method method = producerMethods.get(eventType);
+      if (method == null) {
+        producerMethods.put(eventType, e.getValue());
+      } else if (!method.getName().equals(e.getValue().getName())) {
+        throw new IllegalArgumentException("Producer for type " + eventType + " has already been registered.");
+      }
+    }
   }
 
-  /** This implementation finds all methods marked with a {@link Produce} annotation. */
+  /**
+   * Adds subscribers of the superclass to the subscribers declared in a class. A subscriber overridden (and annotated)
+   * in the class replaces the superclass' subscriber, so the event is delivered to it only once.
+   */
+  static void inheritSubscriberMethods(Map<Class<?>, Set<Method>> inherited,
+      Map<Class<?>, Set<Method>> subscriberMethods) {
+    for (Map.Entry<Class<?>, Set<Method>> e : inherited.entrySet()) {
+      final Class<?> eventType = e.getKey();
+      Set<Method> methods = subscriberMethods.get(eventType);
+      if (methods == null) {
+        subscriberMethods.put(eventType, new HashSet<Method>(e.getValue()));
+        continue;
+      }
+      for (Method method : e.getValue()) {
+        if (!containsMethodNamed(methods, method.getName())) {
+          methods.add(method);
+        }
+      }
+    }
+  }
+
+  private static boolean containsMethodNamed(Set<Method> methods, String name) {
+    for (Method method : methods) {
+      if (method.getName().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** This implementation finds all methods (including inherited ones) marked with a {@link Produce} annotation. */
   static Map<Class<?>, EventProducer> findAllProducers(Object listener) {
-    final Class<?> listenerClass = listener.getClass();
+    return findAllProducers(listener, getListenerMethods(listener.getClass()).producerMethods);
+  }
+
+  /** Creates producers for the given producer methods of the {@code listener}. */
+  static Map<Class<?>, EventProducer> findAllProducers(Object listener, Map<Class<?>, Method> methods) {
     Map<Class<?>, EventProducer> handlersInMethod = new HashMap<Class<?>, EventProducer>();
 
-    Map<Class<?>, Method> methods = PRODUCERS_CACHE.get(listenerClass);
-    if (null == methods) {
-      methods = new HashMap<Class<?>, Method>();
-      loadAnnotatedProducerMethods(listenerClass, methods);
-    }
     if (!methods.isEmpty()) {
       for (Map.Entry<Class<?>, Method> e : methods.entrySet()) {
         EventProducer producer = new EventProducer(listener, e.getValue());
@@ -150,16 +211,15 @@ final class AnnotatedHandlerFinder {
     return handlersInMethod;
   }
 
-  /** This implementation finds all methods marked with a {@link Subscribe} annotation. */
+  /** This implementation finds all methods (including inherited ones) marked with a {@link Subscribe} annotation. */
   static Map<Class<?>, Set<EventHandler>> findAllSubscribers(Object listener) {
-    Class<?> listenerClass = listener.getClass();
+    return findAllSubscribers(listener, getListenerMethods(listener.getClass()).subscriberMethods);
+  }
+
+  /** Creates event handlers for the given subscriber methods of the {@code listener}. */
+  static Map<Class<?>, Set<EventHandler>> findAllSubscribers(Object listener, Map<Class<?>, Set<Method>> methods) {
     Map<Class<?>, Set<EventHandler>> handlersInMethod = new HashMap<Class<?>, Set<EventHandler>>();
 
-    Map<Class<?>, Set<Method>> methods = SUBSCRIBERS_CACHE.get(listenerClass);
-    if (null == methods) {
-      methods = new HashMap<Class<?>, Set<Method>>();
-      loadAnnotatedSubscriberMethods(listenerClass, methods);
-    }
     if (!methods.isEmpty()) {
       for (Map.Entry<Class<?>, Set<Method>> e : methods.entrySet()) {
         Set<EventHandler> handlers = new HashSet<EventHandler>();
@@ -173,6 +233,36 @@ final class AnnotatedHandlerFinder {
     return handlersInMethod;
   }
 
+  /** Producer and subscriber methods of a class, loaded by a single scan on the first access. */
+  private static final class ListenerMethods {
+    private final Class<?> listenerClass;
+    /** Guards {@link #producerMethods} and {@link #subscriberMethods}, they are published by its write. */
+    private volatile boolean loaded;
+    Map<Class<?>, Method> producerMethods;
+    Map<Class<?>, Set<Method>> subscriberMethods;
+
+    ListenerMethods(Class<?> listenerClass) {
+      this.listenerClass = listenerClass;
+    }
+
+    ListenerMethods load() {
+      if (!loaded) {
+        synchronized (this) {
+          if (!loaded) {
+            // if the class is invalid the exception is propagated to every caller and nothing is cached
+            final Map<Class<?>, Method> producers = new HashMap<Class<?>, Method>();
+            final Map<Class<?>, Set<Method>> subscribers = new HashMap<Class<?>, Set<Method>>();
+            loadAnnotatedMethods(listenerClass, producers, subscribers);
+            producerMethods = producers;
+            subscriberMethods = subscribers;
+            loaded = true;
+          }
+        }
+      }
+      return this;
+    }
+  }
+
   private AnnotatedHandlerFinder() {
     // No instances.
   }
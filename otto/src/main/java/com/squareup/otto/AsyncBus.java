@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A {@link Bus} that delivers events to handlers on an {@link Executor}.
+ *
+ * <p>{@link #post(Object)} returns as soon as the event has been handed over to the mailboxes of its handlers. Each
+ * handler has its own serial mailbox: events are delivered to a handler one at a time and in the order they were
+ * posted, while different handlers receive events concurrently. A slow handler therefore neither blocks posting
+ * threads nor delays delivery to other handlers.
+ *
+ * <p>Exceptions thrown by handlers are passed to the {@link SubscriberExceptionHandler} on the executor's thread. An
+ * exception rethrown by it is propagated to the executor's thread after the mailbox has been rescheduled, so remaining
+ * events are still delivered.
+ *
+ * <p>Events are handed over to mailboxes in order of {@link Subscribe#priority()}, however, handlers run concurrently
+ * and can't cancel delivery with {@link #cancelEventDelivery(Object)}.
+ *
+ * <p>The mailbox of a handler with a {@link ThreadMode} other than {@link ThreadMode#POSTING} is drained on the
+ * executor of its mode, see {@link DeliveryExecutors}, so such handlers are called on their thread and still receive
+ * events one at a time and in order, {@link ThreadMode#ASYNC} ones included.
+ *
+ * <p>A conflated event, see {@link #setConflating(Class, boolean)}, replaces the event of the same class still waiting
+ * in the mailbox of a handler and takes its position, just as in the dispatch queue of {@link Bus}, so a slow handler
+ * only receives the latest one.
+ *
+ * @author Sergey Solovyev
+ */
+public class AsyncBus extends Bus {
+
+  /** Maximum number of events delivered by one mailbox task before it yields the executor's thread. */
+  private static final int MAX_EVENTS_PER_TASK = 64;
+
+  /** Executor used to deliver events to handlers of {@link ThreadMode#POSTING}. */
+  private final Executor executor;
+
+  /** Used to deliver events to handlers of other thread modes. */
+  private final DeliveryExecutors executors;
+
+  /** Mailboxes of handlers with undelivered events, indexed by handler. */
+  private final ConcurrentMap<EventHandler, Mailbox> mailboxes = new ConcurrentHashMap<EventHandler, Mailbox>();
+
+  /**
+   * Creates a new AsyncBus named "default" which can be used from any thread and delivers events on {@code executor}.
+   *
+   * @param executor Executor used to deliver events.
+   */
+  public AsyncBus(Executor executor) {
+    this(DEFAULT_IDENTIFIER, executor);
+  }
+
+  /**
+   * Creates a new AsyncBus with the given {@code identifier} which can be used from any thread and delivers events on
+   * {@code executor}.
+   *
+   * @param identifier A brief name for this bus, for debugging purposes.  Should be a valid Java identifier.
+   * @param executor Executor used to deliver events.
+   */
+  public AsyncBus(String identifier, Executor executor) {
+    this(ThreadEnforcer.ANY, identifier, HandlerFinder.ANNOTATED, executor);
+  }
+
+  /**
+   * Creates a new AsyncBus with the given {@code enforcer} for actions, {@code identifier} and {@code handlerFinder}
+   * which delivers events on {@code executor}.
+   *
+   * @param enforcer Thread enforcer for register, unregister, and post actions.
+   * @param identifier A brief name for this bus, for debugging purposes.  Should be a valid Java identifier.
+   * @param handlerFinder Used to discover event handlers and producers when registering/unregistering an object.
+   * @param executor Executor used to deliver events.
+   */
+  public AsyncBus(ThreadEnforcer enforcer, String identifier, HandlerFinder handlerFinder, Executor executor) {
+    this(enforcer, identifier, handlerFinder, DeliveryExecutors.ANDROID, executor);
+  }
+
+  /**
+   * Creates a new AsyncBus with the given {@code enforcer} for actions, {@code identifier} and {@code handlerFinder}
+   * which delivers events on {@code executor}, or on {@code executors} for handlers of a {@link ThreadMode} other than
+   * {@link ThreadMode#POSTING}.
+   *
+   * @param enforcer Thread enforcer for register, unregister, and post actions.
+   * @param identifier A brief name for this bus, for debugging purposes.  Should be a valid Java identifier.
+   * @param handlerFinder Used to discover event handlers and producers when registering/unregistering an object.
+   * @param executors Used to deliver events to handlers of a {@link ThreadMode} other than {@link ThreadMode#POSTING}.
+   * @param executor Executor used to deliver events to other handlers.
+   */
+  public AsyncBus(ThreadEnforcer enforcer, String identifier, HandlerFinder handlerFinder, DeliveryExecutors executors,
+      Executor executor) {
+    super(enforcer, identifier, handlerFinder, executors);
+    if (executor == null) {
+      throw new NullPointerException("Executor must not be null.");
+    }
+    this.executor = executor;
+    this.executors = executors;
+  }
+
+  /** Each handler has its own mailbox, even if it shares its {@link ThreadMode} with adjacent handlers. */
+  @Override boolean groupsByThreadMode() {
+    return false;
+  }
+
+  /** Appends {@code event} to the mailbox of {@code wrapper}, scheduling the mailbox if it is idle. */
+  @Override protected void dispatch(Object event, EventHandler wrapper) {
+    while (true) {
+      Mailbox mailbox = mailboxes.get(wrapper);
+      if (mailbox == null) {
+        final Mailbox mailboxCreation = new Mailbox(wrapper);
+        mailbox = mailboxes.putIfAbsent(wrapper, mailboxCreation);
+        if (mailbox == null) {
+          mailbox = mailboxCreation;
+        }
+      }
+      if (mailbox.offer(event, wrapper)) {
+        return;
+      }
+      // the mailbox has been drained and retired concurrently, try again with a new one
+    }
+  }
+
+  /** Serial queue of events for one handler, drained by at most one executor task at a time. */
+  private final class Mailbox implements Runnable {
+    private final EventHandler handler;
+    /** Executor of the {@link ThreadMode} of {@link #handler}. */
+    private final Executor executor;
+    /**
+     * Undelivered events, each preceded by the handler it was resolved against. An equal handler registered after
+     * {@link #handler} was unregistered shares this mailbox, so validity is checked on the queued handler. Guarded by
+     * {@code this}.
+     */
+    private final ArrayDeque<Object> events = new ArrayDeque<Object>();
+    /** True if a task draining this mailbox is submitted or running. Guarded by {@code this}. */
+    private boolean scheduled;
+    /** True if this mailbox was removed from {@link #mailboxes} and accepts no events. Guarded by {@code this}. */
+    private boolean retired;
+
+    Mailbox(EventHandler handler) {
+      this.handler = handler;
+      final Executor modeExecutor = executors.executorOf(handler.getThreadMode());
+      this.executor = modeExecutor != null ? modeExecutor : AsyncBus.this.executor;
+    }
+
+    /** @return false if this mailbox is retired and the event was not accepted. */
+    boolean offer(Object event, EventHandler wrapper) {
+      synchronized (this) {
+        if (retired) {
+          return false;
+        }
+        if (!isConflating(event.getClass()) || !replaceQueued(event, wrapper)) {
+          events.add(wrapper);
+          events.add(event);
+        }
+        if (scheduled) {
+          return true;
+        }
+        scheduled = true;
+      }
+      schedule();
+      return true;
+    }
+
+    /**
+     * Replaces the most recently queued event of the same class as {@code event}, and its handler, keeping its position
+     * as {@link DispatchQueue#replace(Object, EventHandler[])} does. Must hold the lock.
+     *
+     * @return false if no event of the class is queued, in which case nothing is changed.
+     */
+    private boolean replaceQueued(Object event, EventHandler wrapper) {
+      final Class<?> eventClass = event.getClass();
+      // number of handlers and events queued after the replaced pair
+      int later = 0;
+      final Iterator<Object> queued = events.descendingIterator();
+      while (queued.hasNext()) {
+        if (queued.next().getClass() == eventClass) {
+          // the deque can't be modified in the middle: the later pairs are set aside and appended again
+          final Object[] laterPairs = new Object[later];
+          for (int i = later - 1; i >= 0; i--) {
+            laterPairs[i] = events.pollLast();
+          }
+          events.pollLast();
+          events.pollLast();
+          events.add(wrapper);
+          events.add(event);
+          events.addAll(Arrays.asList(laterPairs));
+          return true;
+        }
+        // and the handler queued with the event
+        queued.next();
+        later += 2;
+      }
+      return false;
+    }
+
+    private void schedule() {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          scheduled = false;
+        }
+        throw e;
+      }
+    }
+
+    @Override public void run() {
+      boolean reschedule = true;
+      try {
+        for (int i = 0; i < MAX_EVENTS_PER_TASK; i++) {
+          final EventHandler wrapper;
+          final Object event;
+          synchronized (this) {
+            wrapper = (EventHandler) events.poll();
+            if (wrapper == null) {
+              retired = true;
+              mailboxes.remove(handler, this);
+              reschedule = false;
+              return;
+            }
+            event = events.poll();
+          }
+          if (wrapper.isValid()) {
+            deliver(wrapper, event);
+          }
+        }
+      } finally {
+        if (reschedule) {
+          // more events might be waiting, or an exception has been rethrown: let other tasks run and continue later
+          schedule();
+        }
+      }
+    }
+
+    /**
+     * Delivers {@code event} to {@code wrapper}, an exception of the handler is passed to the
+     * {@link SubscriberExceptionHandler} and only thrown if rethrown by it.
+     */
+    private void deliver(EventHandler wrapper, Object event) {
+      try {
+        wrapper.handleEvent(event);
+      } catch (RuntimeException e) {
+        final RuntimeException rethrown = handleSubscriberException(e, event);
+        if (rethrown != null) {
+          throw rethrown;
+        }
+      }
+    }
+  }
+}
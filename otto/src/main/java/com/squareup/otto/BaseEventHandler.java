@@ -28,6 +28,21 @@ public abstract class BaseEventHandler implements EventHandler {
    */
   private boolean valid = true;
 
+  /** See {@link Subscribe#priority()}. */
+  private final int priority;
+
+  /** See {@link Subscribe#thread()}. */
+  private final ThreadMode threadMode;
+
+  protected BaseEventHandler() {
+    this(0, ThreadMode.POSTING);
+  }
+
+  protected BaseEventHandler(int priority, ThreadMode threadMode) {
+    this.priority = priority;
+    this.threadMode = threadMode;
+  }
+
   @Override
   public boolean isValid() {
     return valid;
@@ -37,4 +52,14 @@ public abstract class BaseEventHandler implements EventHandler {
   public void invalidate() {
     valid = false;
   }
+
+  @Override
+  public int getPriority() {
+    return priority;
+  }
+
+  @Override
+  public ThreadMode getThreadMode() {
+    return threadMode;
+  }
 }
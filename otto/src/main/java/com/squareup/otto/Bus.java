@@ -17,17 +17,20 @@
 
 package com.squareup.otto;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -52,19 +55,24 @@ import java.util.concurrent.CopyOnWriteArraySet;
  * To post an event, simply provide the event object to the {@link #post(Object)} method.  The Bus instance will
  * determine the type of event and route it to all registered listeners.
  *
- * <p>Events are routed based on their type &mdash; an event will be delivered to any handler for any type to which the
- * event is <em>assignable.</em>  This includes implemented interfaces, all superclasses, and all interfaces implemented
- * by superclasses.
+ * <p>Events are routed based on their type &mdash; an event will be delivered to any handler for any class to which the
+ * event is <em>assignable,</em> i.e. its class and all superclasses. Handlers may also subscribe to interfaces, such as
+ * a marker interface shared by a family of events, once enabled with {@link #setInterfaceDispatch(boolean)}: events
+ * are then delivered to handlers of all interfaces implemented by their class and its superclasses as well.
  *
  * <p>When {@code post} is called, all registered handlers for an event are run in sequence, so handlers should be
  * reasonably quick.  If an event may trigger an extended process (such as a database load), spawn a thread or queue it
  * for later.
  *
+ * <p>Handlers receive an event in order of {@link Subscribe#priority()}, highest first. The order of registration only
+ * breaks ties between handlers with the same priority. A handler may stop further delivery of an event with
+ * {@link #cancelEventDelivery}.
+ *
  * <h2>Handler Methods</h2>
  * Event handler methods must accept only one argument: the event.
  *
- * <p>Handlers should not, in general, throw.  If they do, the Bus will wrap the exception and
- * re-throw it.
+ * <p>Handlers should not, in general, throw.  If they do, the Bus will wrap the exception and pass it to its
+ * {@link SubscriberExceptionHandler}, which by default re-throws it once all queued events have been delivered.
  *
  * <p>The Bus by default enforces that all interactions occur on the main thread.  You can provide an alternate
  * enforcement by passing a {@link ThreadEnforcer} to the constructor.
@@ -74,10 +82,26 @@ import java.util.concurrent.CopyOnWriteArraySet;
  * that a producer is also already registered for, the subscriber will be called with the return value from the
  * producer.
  *
+ * <h2>Sticky Events</h2>
+ * Events posted with {@link #postSticky(Object)} are also kept, the last one of each event class, and delivered to
+ * matching handlers whenever they are registered. Unlike producers, this does not call back into listeners on every
+ * registration. At most {@link #DEFAULT_STICKY_CAPACITY} sticky events are kept unless changed with
+ * {@link #setStickyEventCapacity(int)}, the least recently posted ones are evicted first.
+ *
+ * <h2>Conflated Events</h2>
+ * Events of classes passed to {@link #setConflating(Class, boolean)}, typically frequently updated state such as a
+ * location, are conflated: an event posted while a previous event of the same class is still queued for delivery
+ * replaces it, so handlers only receive the latest one.
+ *
+ * <h2>Weak Registration</h2>
+ * Objects registered with {@link #registerWeakly(Object)} are not kept reachable by the bus. If such an object is
+ * collected without having been unregistered, its handlers stop receiving events and are purged from the bus.
+ *
  * <h2>Dead Events</h2>
  * If an event is posted, but no registered handlers can accept it, it is considered "dead."  To give the system a
  * second chance to handle dead events, they are wrapped in an instance of {@link com.squareup.otto.DeadEvent} and
- * reposted.
+ * reposted, unless nothing subscribes to DeadEvent. Dead events are also counted, see
+ * {@link #getUndeliveredEventCount()}.
  *
  * <p>This class is safe for concurrent use.
  *
@@ -88,14 +112,48 @@ import java.util.concurrent.CopyOnWriteArraySet;
 public class Bus {
   public static final String DEFAULT_IDENTIFIER = "default";
 
+  /** Default maximum number of sticky events kept by a bus, see {@link #setStickyEventCapacity(int)}. */
+  public static final int DEFAULT_STICKY_CAPACITY = 16;
+
   /** All registered event handlers, indexed by event type. */
-  private final ConcurrentMap<Class<?>, Set<EventHandler>> handlersByType =
-          new ConcurrentHashMap<Class<?>, Set<EventHandler>>();
+  private final ConcurrentMap<Class<?>, EventHandlerSet> handlersByType =
+          new ConcurrentHashMap<Class<?>, EventHandlerSet>();
+
+  /**
+   * Handlers of all event types a posted class is dispatched to, indexed by posted class. Tables are resolved lazily
+   * by {@link #getDispatchTable(Class)} and dropped whenever the handlers of one of their event types change.
+   */
+  private final DispatchTableCache dispatchTables = new DispatchTableCache();
+
+  /** Incremented after every change of {@link #handlersByType}, detects tables resolved from stale handlers. */
+  private final AtomicInteger handlersVersion = new AtomicInteger();
 
   /** All registered event producers, index by event type. */
   private final ConcurrentMap<Class<?>, EventProducer> producersByType =
           new ConcurrentHashMap<Class<?>, EventProducer>();
 
+  /** Last sticky event of each event class. */
+  private final StickyEventStore stickyEvents = new StickyEventStore(DEFAULT_STICKY_CAPACITY);
+
+  /** Classes of events which replace queued events of the same class, see {@link #setConflating(Class, boolean)}. */
+  private final Set<Class<?>> conflatingClasses =
+      Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+  /** Weakly registered listeners which have been collected are enqueued here, see {@link #registerWeakly(Object)}. */
+  private final ReferenceQueue<Object> collectedListeners = new ReferenceQueue<Object>();
+
+  /** Number of handlers purged since this bus was created, see {@link #purgeCollectedListeners()}. */
+  private final AtomicLong purgedHandlers = new AtomicLong();
+
+  /** True if events are delivered to handlers of interfaces, see {@link #setInterfaceDispatch(boolean)}. */
+  private volatile boolean interfaceDispatch;
+
+  /** Number of events posted without handlers, see {@link #getUndeliveredEventCount()}. */
+  private final AtomicLong undeliveredEvents = new AtomicLong();
+
+  /** Handles exceptions of handlers, see {@link #setSubscriberExceptionHandler(SubscriberExceptionHandler)}. */
+  private volatile SubscriberExceptionHandler exceptionHandler = SubscriberExceptionHandler.RETHROW_AFTER_DRAIN;
+
   /** Identifier used to differentiate the event bus instance. */
   private final String identifier;
 
@@ -105,18 +163,19 @@ public class Bus {
   /** Used to find handler methods in register and unregister. */
   private final HandlerFinder handlerFinder;
 
-  /** Queues of events for the current thread to dispatch. */
-  private final ThreadLocal<ConcurrentLinkedQueue<EventWithHandler>> eventsToDispatch =
-      new ThreadLocal<ConcurrentLinkedQueue<EventWithHandler>>() {
-        @Override protected ConcurrentLinkedQueue<EventWithHandler> initialValue() {
-          return new ConcurrentLinkedQueue<EventWithHandler>();
-        }
-      };
+  /** Used to deliver events to handlers which are not called on the posting thread. */
+  private final DeliveryExecutors executors;
+
+  /**
+   * Dispatching state of the only thread allowed to use this bus, {@code null} unless the thread enforcer is a
+   * {@link ThreadEnforcer.SingleThreaded} one.
+   */
+  private final DispatchContext confinedContext;
 
-  /** True if the current thread is currently dispatching an event. */
-  private final ThreadLocal<Boolean> isDispatching = new ThreadLocal<Boolean>() {
-    @Override protected Boolean initialValue() {
-      return false;
+  /** Dispatching state of each thread using this bus, unused if {@link #confinedContext} is set. */
+  private final ThreadLocal<DispatchContext> dispatchContexts = new ThreadLocal<DispatchContext>() {
+    @Override protected DispatchContext initialValue() {
+      return new DispatchContext();
     }
   };
 
@@ -191,9 +250,28 @@ public class Bus {
    * @param handlerFinder Used to discover event handlers and producers when registering/unregistering an object.
    */
   public Bus(ThreadEnforcer enforcer, String identifier, HandlerFinder handlerFinder) {
+    this(enforcer, identifier, handlerFinder, DeliveryExecutors.ANDROID);
+  }
+
+  /**
+   * Creates a new Bus with the given {@code enforcer} for actions, {@code identifier}, {@code handlerFinder} and
+   * {@code executors}.
+   *
+   * @param enforcer Thread enforcer for register, unregister, and post actions.
+   * @param identifier A brief name for this bus, for debugging purposes.  Should be a valid Java identifier.
+   * @param handlerFinder Used to discover event handlers and producers when registering/unregistering an object.
+   * @param executors Used to deliver events to handlers which are not called on the posting thread, see
+   * {@link ThreadMode}.
+   */
+  public Bus(ThreadEnforcer enforcer, String identifier, HandlerFinder handlerFinder, DeliveryExecutors executors) {
+    if (executors == null) {
+      throw new NullPointerException("Executors must not be null.");
+    }
     this.enforcer =  enforcer;
     this.identifier = identifier;
     this.handlerFinder = handlerFinder;
+    this.executors = executors;
+    this.confinedContext = enforcer instanceof ThreadEnforcer.SingleThreaded ? new DispatchContext() : null;
   }
 
   @Override public String toString() {
@@ -208,17 +286,54 @@ public class Bus {
    * <p>
    * If any producers are registering for types which already have subscribers, each subscriber will be called with
    * the value from the result of calling the producer.
+   * <p>
+   * Then, subscribers are called with every sticky event they accept, see {@link #postSticky(Object)}.
    *
    * @param object object whose handler methods should be registered.
    * @throws NullPointerException if the object is null.
    */
   public void register(Object object) {
+    register(object, false);
+  }
+
+  /**
+   * Registers all handler methods on {@code object} to receive events, see {@link #register(Object)}, without keeping
+   * {@code object} reachable. If {@code object} is collected before it is unregistered, its handlers stop receiving
+   * events and are purged by a later {@link #register(Object)}, {@link #post(Object)} or
+   * {@link #purgeCollectedListeners()}. Thus, an object which is never unregistered doesn't leak.
+   *
+   * <p>{@code object} may be unregistered with {@link #unregister(Object)} as usual. Producer methods can't be
+   * registered weakly.
+   *
+   * @param object object whose handler methods should be registered.
+   * @throws NullPointerException if the object is null.
+   * @throws IllegalArgumentException if {@code object} has producer methods.
+   */
+  public void registerWeakly(Object object) {
+    register(object, true);
+  }
+
+  private void register(Object object, boolean weakly) {
     if (object == null) {
       throw new NullPointerException("Object to register must not be null.");
     }
     enforcer.enforce(this);
+    purgeCollectedListeners();
 
     Map<Class<?>, EventProducer> foundProducers = handlerFinder.findAllProducers(object);
+    if (weakly && !foundProducers.isEmpty()) {
+      throw new IllegalArgumentException("Producer methods of " + object.getClass() + " can't be registered weakly.");
+    }
+    Map<Class<?>, Set<EventHandler>> foundHandlersMap = handlerFinder.findAllSubscribers(object);
+    if (!interfaceDispatch) {
+      for (Class<?> type : foundHandlersMap.keySet()) {
+        if (type.isInterface()) {
+          throw new IllegalArgumentException("Object " + object.getClass() + " has @Subscribe annotation on " + type
+              + " which is an interface.  Subscription must be on a concrete class type unless interface dispatch is"
+              + " enabled.");
+        }
+      }
+    }
     for (Class<?> type : foundProducers.keySet()) {
 
       final EventProducer producer = foundProducers.get(type);
@@ -229,20 +344,22 @@ public class Bus {
           + " found on type " + producer.target.getClass()
           + ", but already registered by type " + previousProducer.target.getClass() + ".");
       }
-      Set<EventHandler> handlers = handlersByType.get(type);
-      if (handlers != null && !handlers.isEmpty()) {
-        for (EventHandler handler : handlers) {
+      EventHandlerSet handlers = handlersByType.get(type);
+      if (handlers != null) {
+        for (EventHandler handler : handlers.snapshot()) {
           dispatchProducerResultToHandler(handler, producer);
         }
       }
     }
 
-    Map<Class<?>, Set<EventHandler>> foundHandlersMap = handlerFinder.findAllSubscribers(object);
+    if (weakly) {
+      holdWeakly(object, foundHandlersMap);
+    }
     for (Class<?> type : foundHandlersMap.keySet()) {
-      Set<EventHandler> handlers = handlersByType.get(type);
+      EventHandlerSet handlers = handlersByType.get(type);
       if (handlers == null) {
         //concurrent put if absent
-        Set<EventHandler> handlersCreation = new CopyOnWriteArraySet<EventHandler>();
+        EventHandlerSet handlersCreation = new EventHandlerSet();
         handlers = handlersByType.putIfAbsent(type, handlersCreation);
         if (handlers == null) {
             handlers = handlersCreation;
@@ -252,6 +369,7 @@ public class Bus {
       if (!handlers.addAll(foundHandlers)) {
         throw new IllegalArgumentException("Object already registered.");
       }
+      invalidateDispatchTables(type);
     }
 
     for (Map.Entry<Class<?>, Set<EventHandler>> entry : foundHandlersMap.entrySet()) {
@@ -269,6 +387,69 @@ public class Bus {
         }
       }
     }
+
+    if (!stickyEvents.isEmpty()) {
+      dispatchStickyEventsToHandlers(foundHandlersMap);
+    }
+  }
+
+  /** Makes all {@code foundHandlersMap} of {@code object} hold it through one {@link ListenerReference}. */
+  private void holdWeakly(Object object, Map<Class<?>, Set<EventHandler>> foundHandlersMap) {
+    final ListenerReference reference = new ListenerReference(object, collectedListeners, foundHandlersMap);
+    for (Set<EventHandler> foundHandlers : foundHandlersMap.values()) {
+      for (EventHandler handler : foundHandlers) {
+        if (!(handler instanceof ListenerEventHandler)) {
+          throw new IllegalArgumentException("Handler " + handler + " can't hold its listener weakly.");
+        }
+        ((ListenerEventHandler) handler).holdWeakly(reference);
+      }
+    }
+  }
+
+  /**
+   * Unregisters the handlers of objects registered with {@link #registerWeakly(Object)} which have been collected
+   * without being unregistered. Purging is also done by {@link #register(Object)} and {@link #post(Object)}, calling
+   * this method is only needed to release the handlers of a bus which is not used.
+   *
+   * @return number of handlers purged by this call.
+   */
+  public int purgeCollectedListeners() {
+    int purged = 0;
+    while (true) {
+      final ListenerReference reference = (ListenerReference) collectedListeners.poll();
+      if (reference == null) {
+        break;
+      }
+      for (Map.Entry<Class<?>, Set<EventHandler>> entry : reference.handlers.entrySet()) {
+        final EventHandlerSet handlers = handlersByType.get(entry.getKey());
+        if (handlers == null) {
+          continue;
+        }
+        int purgedOfType = 0;
+        for (EventHandler handler : entry.getValue()) {
+          // the handler was not purged if its listener has been unregistered before being collected
+          if (handlers.extract(handler) != null) {
+            purgedOfType++;
+          }
+        }
+        if (purgedOfType > 0) {
+          invalidateDispatchTables(entry.getKey());
+          purged += purgedOfType;
+        }
+      }
+    }
+    if (purged > 0) {
+      purgedHandlers.addAndGet(purged);
+    }
+    return purged;
+  }
+
+  /**
+   * @return number of handlers of collected objects purged since this bus was created, see
+   * {@link #purgeCollectedListeners()}.
+   */
+  public long getPurgedHandlerCount() {
+    return purgedHandlers.get();
   }
 
   private void dispatchProducerResultToHandler(EventHandler handler, EventProducer producer) {
@@ -281,7 +462,41 @@ public class Bus {
     if (event == null) {
       return;
     }
-    dispatch(event, handler);
+    dispatchToHandler(event, handler);
+  }
+
+  /**
+   * Dispatches the stored sticky events, least recently posted first, to the handlers accepting them. Each event is
+   * delivered in order of priority, as by {@link #post(Object)}.
+   */
+  private void dispatchStickyEventsToHandlers(Map<Class<?>, Set<EventHandler>> foundHandlersMap) {
+    final List<EventHandler> handlers = new ArrayList<EventHandler>();
+    for (Object event : stickyEvents.snapshot()) {
+      final Class<?>[] eventTypes = flattenHierarchy(event.getClass());
+      for (int i = 0; i < eventTypes.length; i++) {
+        final Set<EventHandler> foundHandlers = foundHandlersMap.get(eventTypes[i]);
+        if (foundHandlers != null) {
+          handlers.addAll(foundHandlers);
+        }
+      }
+      // found handlers are not ordered
+      Collections.sort(handlers, EventHandlerSet.PRIORITY_ORDER);
+      for (EventHandler handler : handlers) {
+        if (handler.isValid()) {
+          dispatchToHandler(event, handler);
+        }
+      }
+      handlers.clear();
+    }
+  }
+
+  /** Dispatches {@code event} to a single {@code handler}, on the thread requested by the handler. */
+  private void dispatchToHandler(Object event, EventHandler handler) {
+    if (handler.getThreadMode() == ThreadMode.POSTING) {
+      dispatch(event, handler);
+    } else {
+      dispatch(event, new ThreadModeHandler(this, handler.getThreadMode(), new EventHandler[] {handler}, executors));
+    }
   }
 
   /**
@@ -313,7 +528,7 @@ public class Bus {
 
     Map<Class<?>, Set<EventHandler>> handlersInListener = handlerFinder.findAllSubscribers(object);
     for (Map.Entry<Class<?>, Set<EventHandler>> entry : handlersInListener.entrySet()) {
-      Set<EventHandler> currentHandlers = getHandlersForEventType(entry.getKey());
+      EventHandlerSet currentHandlers = getHandlersForEventType(entry.getKey());
       Collection<EventHandler> eventMethodsInListener = entry.getValue();
 
       if (currentHandlers == null || !currentHandlers.containsAll(eventMethodsInListener)) {
@@ -322,91 +537,401 @@ public class Bus {
                 + " registered?");
       }
 
-      for (EventHandler handler : currentHandlers) {
-        if (eventMethodsInListener.contains(handler)) {
-          handler.invalidate();
+      for (EventHandler handler : eventMethodsInListener) {
+        // the registered handler is equal to, but not necessarily the same instance as, the one just found
+        EventHandler registered = currentHandlers.extract(handler);
+        if (registered != null) {
+          registered.invalidate();
         }
       }
-      currentHandlers.removeAll(eventMethodsInListener);
+      invalidateDispatchTables(entry.getKey());
     }
   }
 
   /**
-   * Posts an event to all registered handlers.  This method will return successfully after the event has been posted to
-   * all handlers, and regardless of any exceptions thrown by handlers.
+   * Posts an event to all registered handlers.  This method will return after the event has been posted to all
+   * handlers, and regardless of any exceptions thrown by handlers: these are passed to the
+   * {@link SubscriberExceptionHandler}.
    *
    * <p>If no handlers have been subscribed for {@code event}'s class, and {@code event} is not already a
    * {@link DeadEvent}, it will be wrapped in a DeadEvent and reposted.
    *
    * @param event event to post.
    * @throws NullPointerException if the event is null.
+   * @throws RuntimeException if rethrown by the {@link SubscriberExceptionHandler}, after all queued events have been
+   *     delivered.
    */
   public void post(Object event) {
     if (event == null) {
       throw new NullPointerException("Event to post must not be null.");
     }
     enforcer.enforce(this);
+    purgeCollectedListeners();
+
+    final DispatchContext context = dispatchContext();
+    enqueueEvent(context, event, getDispatchTable(event.getClass()));
+
+    dispatchQueuedEvents(context);
+  }
+
+  /**
+   * Posts an event to all registered handlers, see {@link #post(Object)}, and keeps it as the sticky event of its
+   * class, replacing the previous one. Handlers registered later receive the sticky event on registration, until it is
+   * removed or evicted.
+   *
+   * @param event event to post.
+   * @throws NullPointerException if the event is null.
+   */
+  public void postSticky(Object event) {
+    if (event == null) {
+      throw new NullPointerException("Event to post must not be null.");
+    }
+    // an event posted from a wrong thread must not be kept either
+    enforcer.enforce(this);
+    stickyEvents.put(event);
+    post(event);
+  }
+
+  /**
+   * Retrieves the sticky event of class {@code eventClass}.
+   *
+   * @param eventClass exact class of the sticky event.
+   * @return last sticky event posted of class {@code eventClass}, or {@code null} if none is kept.
+   */
+  public <T> T getStickyEvent(Class<T> eventClass) {
+    return eventClass.cast(stickyEvents.get(eventClass));
+  }
+
+  /**
+   * Removes the sticky event of class {@code eventClass}, handlers registered later won't receive it.
+   *
+   * @param eventClass exact class of the sticky event.
+   * @return removed sticky event, or {@code null} if none was kept.
+   */
+  public <T> T removeStickyEvent(Class<T> eventClass) {
+    return eventClass.cast(stickyEvents.remove(eventClass));
+  }
+
+  /**
+   * Removes {@code event} if it is still the sticky event of its class, handlers registered later won't receive it.
+   *
+   * @param event sticky event to remove.
+   * @return {@code true} if {@code event} was removed.
+   * @throws NullPointerException if the event is null.
+   */
+  public boolean removeStickyEvent(Object event) {
+    if (event == null) {
+      throw new NullPointerException("Event to remove must not be null.");
+    }
+    return stickyEvents.remove(event);
+  }
+
+  /** Removes all sticky events. */
+  public void removeAllStickyEvents() {
+    stickyEvents.clear();
+  }
+
+  /**
+   * Sets the maximum number of sticky events kept, {@link #DEFAULT_STICKY_CAPACITY} by default. If more sticky events
+   * are kept, the least recently posted ones are evicted.
+   *
+   * @param capacity maximum number of sticky events.
+   * @throws IllegalArgumentException if {@code capacity} is not positive.
+   */
+  public void setStickyEventCapacity(int capacity) {
+    stickyEvents.setCapacity(capacity);
+  }
+
+  /**
+   * Sets whether events of class {@code eventClass} are conflated. A conflated event posted while an event of the same
+   * class is still waiting in the dispatch queue, e.g. when it is posted by a handler, replaces the queued event
+   * instead of being queued after it. Thus, the latest event is delivered once and in place of the queued one, and
+   * handlers never receive outdated events. Events being delivered already are not affected.
+   *
+   * <p>Only events of exactly {@code eventClass} are conflated, events of its subclasses are not.
+   *
+   * @param eventClass class of events.
+   * @param conflating {@code true} if events should be conflated.
+   * @throws NullPointerException if the class is null.
+   */
+  public void setConflating(Class<?> eventClass, boolean conflating) {
+    if (eventClass == null) {
+      throw new NullPointerException("Event class must not be null.");
+    }
+    if (conflating) {
+      conflatingClasses.add(eventClass);
+    } else {
+      conflatingClasses.remove(eventClass);
+    }
+  }
+
+  /** @return true if events of class {@code eventClass} are conflated. */
+  boolean isConflating(Class<?> eventClass) {
+    return !conflatingClasses.isEmpty() && conflatingClasses.contains(eventClass);
+  }
+
+  /**
+   * Sets how exceptions thrown by handlers while delivering posted events are handled, by default they are rethrown
+   * from {@link #post(Object)} once all queued events have been delivered, see
+   * {@link SubscriberExceptionHandler#RETHROW_AFTER_DRAIN}. Whatever the policy, a failing handler neither prevents the
+   * delivery of an event to other handlers nor leaves queued events undelivered.
+   *
+   * @param exceptionHandler policy for exceptions of handlers.
+   * @throws NullPointerException if the exception handler is null.
+   */
+  public void setSubscriberExceptionHandler(SubscriberExceptionHandler exceptionHandler) {
+    if (exceptionHandler == null) {
+      throw new NullPointerException("Exception handler must not be null.");
+    }
+    this.exceptionHandler = exceptionHandler;
+  }
+
+  /**
+   * Retrieves the number of events posted since this bus was created which had no handlers, not counting
+   * {@link DeadEvent}s. Unlike subscribing to DeadEvent, this doesn't require wrapping each such event.
+   *
+   * @return number of events posted without handlers.
+   */
+  public long getUndeliveredEventCount() {
+    return undeliveredEvents.get();
+  }
 
-    Set<Class<?>> dispatchTypes = flattenHierarchy(event.getClass());
+  /**
+   * Sets whether events are delivered to handlers of the interfaces implemented by their class and its superclasses.
+   * Subscribing to an interface is only allowed while interface dispatch is enabled, handlers of interfaces registered
+   * meanwhile don't receive events once it's disabled.
+   *
+   * @param enabled {@code true} to deliver events to handlers of interfaces.
+   */
+  public void setInterfaceDispatch(boolean enabled) {
+    interfaceDispatch = enabled;
+    handlersVersion.incrementAndGet();
+    dispatchTables.clear();
+  }
 
-    boolean dispatched = false;
-    for (Class<?> eventType : dispatchTypes) {
-      Set<EventHandler> wrappers = getHandlersForEventType(eventType);
+  /**
+   * Posts all {@code events}, in iteration order, to their registered handlers. Events are delivered exactly as if
+   * each of them was passed to {@link #post(Object)} in turn, but thread enforcement and dispatching overhead is paid
+   * once per batch.
+   *
+   * @param events events to post.
+   * @throws NullPointerException if the collection or any of its events is null, in which case nothing is posted.
+   */
+  public void postAll(Collection<?> events) {
+    if (events == null) {
+      throw new NullPointerException("Events to post must not be null.");
+    }
+    for (Object event : events) {
+      if (event == null) {
+        throw new NullPointerException("Event to post must not be null.");
+      }
+    }
+    enforcer.enforce(this);
+    purgeCollectedListeners();
 
-      if (wrappers != null && !wrappers.isEmpty()) {
-        dispatched = true;
-        for (EventHandler wrapper : wrappers) {
-          enqueueEvent(event, wrapper);
+    final DispatchContext context = dispatchContext();
+    if (context.dispatching) {
+      // called from a handler, events are only queued just as reentrant posts are
+      for (Object event : events) {
+        enqueueEvent(context, event, getDispatchTable(event.getClass()));
+      }
+      return;
+    }
+
+    context.dispatching = true;
+    RuntimeException thrown = null;
+    try {
+      for (Object event : events) {
+        enqueueEvent(context, event, getDispatchTable(event.getClass()));
+        final RuntimeException exception = drainQueuedEvents(context);
+        if (thrown == null) {
+          thrown = exception;
         }
       }
+    } finally {
+      context.dispatching = false;
+    }
+    if (thrown != null) {
+      throw thrown;
     }
+  }
 
-    if (!dispatched && !(event instanceof DeadEvent)) {
-      post(new DeadEvent(this, event));
+  /**
+   * Cancels delivery of {@code event} to the handlers which have not received it yet, i.e. to handlers with lower
+   * {@link Subscribe#priority()} or registered later. Must be called from a handler, on the posting thread, while
+   * {@code event} is being delivered to it by {@link #post(Object)} or {@link #postAll(Collection)}.
+   *
+   * @param event event currently being delivered.
+   * @throws NullPointerException if the event is null.
+   * @throws IllegalStateException if {@code event} is not being delivered on the current thread.
+   */
+  public void cancelEventDelivery(Object event) {
+    if (event == null) {
+      throw new NullPointerException("Event to cancel must not be null.");
     }
+    enforcer.enforce(this);
 
-    dispatchQueuedEvents();
+    final DispatchContext context = dispatchContext();
+    if (context.event != event) {
+      throw new IllegalStateException("Event " + event + " is not being delivered on this thread.");
+    }
+    context.cancelled = true;
+  }
+
+  /**
+   * Posts all {@code events}, see {@link #postAll(Collection)}.
+   *
+   * @param events events to post.
+   * @throws NullPointerException if any of the events is null, in which case nothing is posted.
+   */
+  public void postAll(Object... events) {
+    postAll(Arrays.asList(events));
+  }
+
+  /**
+   * Queues {@code event} for each of its resolved {@code wrappers}. If there are none and {@code event} is not already
+   * a {@link DeadEvent}, counts it as undelivered and queues it wrapped in a DeadEvent for the handlers of DeadEvent
+   * instead. The DeadEvent is only allocated if there are such handlers.
+   */
+  private void enqueueEvent(DispatchContext context, Object event, EventHandler[] wrappers) {
+    if (wrappers.length == 0) {
+      if (!(event instanceof DeadEvent)) {
+        undeliveredEvents.incrementAndGet();
+        final EventHandler[] deadEventWrappers = getDispatchTable(DeadEvent.class);
+        if (deadEventWrappers.length > 0) {
+          context.queue.offer(new DeadEvent(this, event), deadEventWrappers);
+        }
+      }
+      return;
+    }
+    if (isConflating(event.getClass()) && context.queue.replace(event, wrappers)) {
+      return;
+    }
+    context.queue.offer(event, wrappers);
   }
 
   /**
    * Queue the {@code event} for dispatch during {@link #dispatchQueuedEvents()}. Events are queued in-order of
    * occurrence so they can be dispatched in the same order.
+   *
+   * @deprecated {@link #post(Object)} queues each event once together with all of its handlers and no longer calls
+   *     this method, so overriding it has no effect. Override {@link #dispatch(Object, EventHandler)} to customize
+   *     delivery instead.
    */
+  @Deprecated
   protected void enqueueEvent(Object event, EventHandler handler) {
-    eventsToDispatch.get().offer(new EventWithHandler(event, handler));
+    // a single threaded bus keeps a confined queue which must not be touched from other threads
+    enforcer.enforce(this);
+    dispatchContext().queue.offer(event, new EventHandler[] {handler});
   }
 
   /**
    * Drain the queue of events to be dispatched. As the queue is being drained, new events may be posted to the end of
    * the queue.
+   *
+   * @deprecated {@link #post(Object)} and {@link #postAll(Collection)} drain the queue without calling this method, so
+   *     overriding it has no effect. Override {@link #dispatch(Object, EventHandler)} to customize delivery instead.
    */
+  @Deprecated
   protected void dispatchQueuedEvents() {
+    enforcer.enforce(this);
+    dispatchQueuedEvents(dispatchContext());
+  }
+
+  private void dispatchQueuedEvents(DispatchContext context) {
     // don't dispatch if we're already dispatching, that would allow reentrancy and out-of-order events. Instead, leave
     // the events to be dispatched after the in-progress dispatch is complete.
-    if (isDispatching.get()) {
+    if (context.dispatching) {
       return;
     }
 
-    isDispatching.set(true);
+    context.dispatching = true;
+    final RuntimeException thrown;
     try {
-      while (true) {
-        EventWithHandler eventWithHandler = eventsToDispatch.get().poll();
-        if (eventWithHandler == null) {
-          break;
+      thrown = drainQueuedEvents(context);
+    } finally {
+      context.dispatching = false;
+    }
+    if (thrown != null) {
+      throw thrown;
+    }
+  }
+
+  /**
+   * Dispatches queued events until the queue is empty, must only be called while dispatching. Exceptions of handlers
+   * are passed to the {@link SubscriberExceptionHandler} and don't interrupt delivery. An event interrupted by an
+   * {@link Error} of a handler is first delivered to its remaining handlers on the next drain.
+   *
+   * @return first exception rethrown by the {@link SubscriberExceptionHandler}, {@code null} if none.
+   */
+  private RuntimeException drainQueuedEvents(DispatchContext context) {
+    final DispatchQueue queue = context.queue;
+    RuntimeException thrown = null;
+    while (true) {
+      EventHandler[] handlers = context.handlers;
+      if (handlers == null) {
+        if (queue.isEmpty()) {
+          return thrown;
         }
+        handlers = queue.headHandlers();
+        context.event = queue.headEvent();
+        context.handlers = handlers;
+        context.next = 0;
+        queue.removeHead();
+      }
 
-        if (eventWithHandler.handler.isValid()) {
-          dispatch(eventWithHandler.event, eventWithHandler.handler);
+      final Object event = context.event;
+      while (context.next < handlers.length && !context.cancelled) {
+        final EventHandler handler = handlers[context.next++];
+        if (handler.isValid()) {
+          try {
+            dispatch(event, handler);
+          } catch (RuntimeException e) {
+            // a group of handlers has already passed its exceptions to the exception handler, only rethrown ones reach
+            // this point
+            final RuntimeException rethrown =
+                handler instanceof ThreadModeHandler ? e : handleSubscriberException(e, event);
+            if (thrown == null) {
+              thrown = rethrown;
+            }
+          }
         }
       }
-    } finally {
-      isDispatching.set(false);
+      context.event = null;
+      context.handlers = null;
+      context.cancelled = false;
     }
   }
 
+  /**
+   * Passes {@code exception} thrown by a handler of {@code event} to the {@link SubscriberExceptionHandler}.
+   *
+   * @return exception rethrown by the {@link SubscriberExceptionHandler}, {@code null} if none.
+   */
+  RuntimeException handleSubscriberException(RuntimeException exception, Object event) {
+    try {
+      exceptionHandler.handleException(exception, this, event);
+      return null;
+    } catch (RuntimeException rethrown) {
+      return rethrown;
+    }
+  }
+
+  /** @return true if delivery of {@code event}, which is being delivered on the current thread, has been cancelled. */
+  boolean isDeliveryCancelled(Object event) {
+    final DispatchContext context = dispatchContext();
+    return context.event == event && context.cancelled;
+  }
+
+  /** @return dispatching state of the current thread. */
+  private DispatchContext dispatchContext() {
+    final DispatchContext context = confinedContext;
+    return context != null ? context : dispatchContexts.get();
+  }
+
   /**
    * Dispatches {@code event} to the handler in {@code wrapper}.  This method is an appropriate override point for
-   * subclasses that wish to make event delivery asynchronous.
+   * subclasses that wish to make event delivery asynchronous, see {@link AsyncBus}.
    *
    * @param event event to dispatch.
    * @param wrapper wrapper that will call the handler.
@@ -433,46 +958,130 @@ public class Bus {
    * @param type type of handlers to retrieve.
    * @return currently registered handlers, or {@code null}.
    */
-  Set<EventHandler> getHandlersForEventType(Class<?> type) {
+  EventHandlerSet getHandlersForEventType(Class<?> type) {
     return handlersByType.get(type);
   }
 
   /**
-   * Flattens a class's type hierarchy into a set of Class objects.  The set will include all superclasses
-   * (transitively), and all interfaces implemented by these superclasses.
+   * Retrieves the handlers an event of class {@code eventClass} should be delivered to: the handlers of every type in
+   * the flattened hierarchy of {@code eventClass}, ordered by priority. The returned array must not be modified.
    *
-   * @param concreteClass class whose type hierarchy will be retrieved.
-   * @return {@code concreteClass}'s complete type hierarchy, flattened and uniqued.
-   */
-  Set<Class<?>> flattenHierarchy(Class<?> concreteClass) {
-    Set<Class<?>> classes = flattenHierarchyCache.get(concreteClass);
-    if (classes == null) {
-      Set<Class<?>> classesCreation = getClassesFor(concreteClass);
-      classes = flattenHierarchyCache.putIfAbsent(concreteClass, classesCreation);
-      if (classes == null) {
-        classes = classesCreation;
+   * @param eventClass class of the posted event.
+   * @return resolved handlers, empty if there are none.
+   */
+  EventHandler[] getDispatchTable(Class<?> eventClass) {
+    EventHandler[] table = dispatchTables.get(eventClass);
+    if (table == null) {
+      final int version = handlersVersion.get();
+      table = resolveDispatchTable(eventClass);
+      dispatchTables.put(eventClass, table);
+      if (version != handlersVersion.get()) {
+        // handlers have changed while the table was being resolved, it might be stale
+        dispatchTables.remove(eventClass, table);
       }
     }
-
-    return classes;
+    return table;
   }
 
-  private Set<Class<?>> getClassesFor(Class<?> concreteClass) {
-    List<Class<?>> parents = new LinkedList<Class<?>>();
-    Set<Class<?>> classes = new HashSet<Class<?>>();
-
-    parents.add(concreteClass);
+  private EventHandler[] resolveDispatchTable(Class<?> eventClass) {
+    // handlers of the only type with handlers so far; if no other type has any, e.g. for a final event class whose
+    // supertypes have no subscribers, the snapshot of its handlers is used as the table without copying or sorting
+    EventHandler[] single = null;
+    List<EventHandler> merged = null;
+    final Class<?>[] eventTypes = flattenHierarchy(eventClass);
+    for (int i = 0; i < eventTypes.length; i++) {
+      final EventHandlerSet handlersForType = getHandlersForEventType(eventTypes[i]);
+      if (handlersForType != null) {
+        final EventHandler[] snapshot = handlersForType.snapshot();
+        if (snapshot.length == 0) {
+          continue;
+        }
+        if (single == null && merged == null) {
+          single = snapshot;
+        } else {
+          if (merged == null) {
+            merged = new ArrayList<EventHandler>(Arrays.asList(single));
+            single = null;
+          }
+          merged.addAll(Arrays.asList(snapshot));
+        }
+      }
+    }
+    if (merged != null) {
+      // each snapshot is already ordered by priority, handlers of different types must be merged
+      Collections.sort(merged, EventHandlerSet.PRIORITY_ORDER);
+      final EventHandler[] table = merged.toArray(new EventHandler[merged.size()]);
+      return groupsByThreadMode() ? groupByThreadMode(table) : table;
+    }
+    if (single == null) {
+      return EventHandlerSet.NO_HANDLERS;
+    }
+    return groupsByThreadMode() ? groupByThreadMode(single) : single;
+  }
 
-    while (!parents.isEmpty()) {
-      Class<?> clazz = parents.remove(0);
-      classes.add(clazz);
+  /**
+   * @return true if dispatch tables deliver to consecutive handlers of a {@link ThreadMode} with one
+   *     {@link ThreadModeHandler}, false if {@link #dispatch(Object, EventHandler)} receives each handler itself.
+   */
+  boolean groupsByThreadMode() {
+    return true;
+  }
 
-      Class<?> parent = clazz.getSuperclass();
-      if (parent != null) {
-        parents.add(parent);
+  /**
+   * Replaces each run of consecutive handlers of the same {@link ThreadMode}, other than {@link ThreadMode#POSTING},
+   * with one {@link ThreadModeHandler}. Handlers are never reordered, so priorities and cancellation are respected, and
+   * delivering an event takes one executor task per run.
+   *
+   * @return {@code handlers} itself if all of them are called on the posting thread.
+   */
+  private EventHandler[] groupByThreadMode(EventHandler[] handlers) {
+    List<EventHandler> table = null;
+    int i = 0;
+    while (i < handlers.length) {
+      final ThreadMode mode = handlers[i].getThreadMode();
+      if (mode == ThreadMode.POSTING) {
+        if (table != null) {
+          table.add(handlers[i]);
+        }
+        i++;
+        continue;
+      }
+      if (table == null) {
+        table = new ArrayList<EventHandler>(handlers.length);
+        table.addAll(Arrays.asList(handlers).subList(0, i));
+      }
+      int end = i + 1;
+      while (end < handlers.length && handlers[end].getThreadMode() == mode) {
+        end++;
       }
+      table.add(new ThreadModeHandler(this, mode, Arrays.copyOfRange(handlers, i, end), executors));
+      i = end;
     }
-    return classes;
+    return table == null ? handlers : table.toArray(new EventHandler[table.size()]);
+  }
+
+  /** Drops the dispatch tables of all classes whose events are delivered to the handlers of {@code eventType}. */
+  private void invalidateDispatchTables(Class<?> eventType) {
+    handlersVersion.incrementAndGet();
+    if (Modifier.isFinal(eventType.getModifiers()) && !eventType.isArray()) {
+      // no other class is assignable to a final class, there's no need to scan all tables
+      dispatchTables.remove(eventType);
+      return;
+    }
+    dispatchTables.removeAssignableTo(eventType);
+  }
+
+  /**
+   * Flattens a class's type hierarchy into an array of Class objects, most specific first.  The array will include all
+   * superclasses (transitively) and, if interface dispatch is enabled, all interfaces implemented by these superclasses
+   * (and their superinterfaces). Hierarchies are cached by {@link HierarchyCache}, which doesn't prevent classes from
+   * being unloaded.
+   *
+   * @param concreteClass class whose type hierarchy will be retrieved.
+   * @return {@code concreteClass}'s complete type hierarchy, flattened and uniqued. Must not be modified.
+   */
+  Class<?>[] flattenHierarchy(Class<?> concreteClass) {
+    return (interfaceDispatch ? HierarchyCache.CLASSES_AND_INTERFACES : HierarchyCache.CLASSES).get(concreteClass);
   }
 
   /**
@@ -488,18 +1097,4 @@ public class Bus {
       throw new RuntimeException(msg + ": " + e.getMessage(), e);
     }
   }
-
-  private final ConcurrentMap<Class<?>, Set<Class<?>>> flattenHierarchyCache =
-      new ConcurrentHashMap<Class<?>, Set<Class<?>>>();
-
-  /** Simple struct representing an event and its handler. */
-  static class EventWithHandler {
-    final Object event;
-    final EventHandler handler;
-
-    public EventWithHandler(Object event, EventHandler handler) {
-      this.event = event;
-      this.handler = handler;
-    }
-  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link HandlerFinder} which chains {@link HandlerFinder}s generated for each listener class by the annotation
+ * processor ('-Aotto.finder=class').
+ *
+ * <p>A generated finder is found by its name derived from the name of the listener class (see
+ * {@link #getFinderClassName(String)}), thus, listeners compiled in different modules are supported without any
+ * registration. The finder is looked up once per listener class and then taken from a map. Listener classes without
+ * a generated finder (f.e. anonymous classes) are delegated to the fallback finder.
+ *
+ * @author Sergey Solovyev
+ */
+public final class CompositeHandlerFinder implements HandlerFinder {
+
+  /** Package and prefix of the name of generated finders. */
+  static final String FINDER_PREFIX = "com.squareup.otto.HandlerFinder_";
+
+  private final HandlerFinder fallback;
+  private final ConcurrentMap<Class<?>, HandlerFinder> finders = new ConcurrentHashMap<Class<?>, HandlerFinder>();
+
+  /** Creates a finder which finds methods of classes without a generated finder with reflection. */
+  public CompositeHandlerFinder() {
+    this(HandlerFinder.ANNOTATED);
+  }
+
+  /**
+   * Creates a finder which delegates classes without a generated finder to {@code fallback}.
+   *
+   * @param fallback Used to find methods of classes without a generated finder.
+   */
+  public CompositeHandlerFinder(HandlerFinder fallback) {
+    if (fallback == null) {
+      throw new NullPointerException("Fallback finder must not be null.");
+    }
+    this.fallback = fallback;
+  }
+
+  @Override
+  public Map<Class<?>, EventProducer> findAllProducers(Object listener) {
+    return getFinder(listener.getClass()).findAllProducers(listener);
+  }
+
+  @Override
+  public Map<Class<?>, Set<EventHandler>> findAllSubscribers(Object listener) {
+    return getFinder(listener.getClass()).findAllSubscribers(listener);
+  }
+
+  private HandlerFinder getFinder(Class<?> listenerClass) {
+    HandlerFinder finder = finders.get(listenerClass);
+    if (finder == null) {
+      finder = loadFinder(listenerClass);
+      final HandlerFinder oldFinder = finders.putIfAbsent(listenerClass, finder);
+      if (oldFinder != null) {
+        finder = oldFinder;
+      }
+    }
+    return finder;
+  }
+
+  private HandlerFinder loadFinder(Class<?> listenerClass) {
+    final Class<?> finderClass;
+    try {
+      // generated finder is compiled together with the listener, thus, it's visible to its class loader
+      finderClass = Class.forName(getFinderClassName(listenerClass.getName()), true, listenerClass.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return fallback;
+    }
+    try {
+      return (HandlerFinder) finderClass.newInstance();
+    } catch (InstantiationException e) {
+      throw new IllegalStateException("Unable to create " + finderClass, e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Unable to create " + finderClass, e);
+    }
+  }
+
+  /**
+   * Returns the name of the finder generated for the listener class with the given (binary) name. Package separators
+   * are replaced with '_' and '_' is doubled, so different listener classes never share a finder name.
+   */
+  static String getFinderClassName(String listenerClassName) {
+    return FINDER_PREFIX + listenerClassName.replace("_", "__").replace('.', '_');
+  }
+}
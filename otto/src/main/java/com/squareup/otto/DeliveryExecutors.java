@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.otto;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors which deliver events to handlers with a {@link ThreadMode} other than {@link ThreadMode#POSTING}.
+ *
+ * <p>{@link #ANDROID} is used by default: it delivers {@link ThreadMode#MAIN} events through a {@link Handler} of the
+ * main {@link Looper} and uses daemon threads for {@link ThreadMode#BACKGROUND} and {@link ThreadMode#ASYNC} events.
+ * Subclasses may override {@link #isMainThread()} to define the main thread outside of Android.
+ *
+ * @author Sergey Solovyev
+ */
+public class DeliveryExecutors {
+
+  /** Executors of an Android application, created when first used. */
+  public static final DeliveryExecutors ANDROID = new DeliveryExecutors(null, null, null);
+
+  private volatile Executor main;
+  private volatile Executor background;
+  private volatile Executor async;
+
+  /**
+   * Creates executors for delivering events.
+   *
+   * @param main Executor which runs tasks on the main thread, Android's main thread if {@code null}.
+   * @param background Executor which runs tasks one at a time on a background thread, a daemon thread if {@code null}.
+   * @param async Executor which runs tasks concurrently on background threads, daemon threads if {@code null}.
+   */
+  public DeliveryExecutors(Executor main, Executor background, Executor async) {
+    this.main = main;
+    this.background = background;
+    this.async = async;
+  }
+
+  /** @return true if the current thread is the thread of {@link #main()} */
+  public boolean isMainThread() {
+    return Looper.myLooper() == Looper.getMainLooper();
+  }
+
+  /** @return executor of {@link ThreadMode#MAIN} handlers */
+  public final Executor main() {
+    Executor result = main;
+    if (result == null) {
+      synchronized (this) {
+        result = main;
+        if (result == null) {
+          final Handler handler = new Handler(Looper.getMainLooper());
+          result = new Executor() {
+            @Override public void execute(Runnable command) {
+              if (!handler.post(command)) {
+                throw new IllegalStateException("Main looper is quitting, " + command + " is rejected.");
+              }
+            }
+          };
+          main = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return executor of {@link ThreadMode#BACKGROUND} handlers */
+  public final Executor background() {
+    Executor result = background;
+    if (result == null) {
+      synchronized (this) {
+        result = background;
+        if (result == null) {
+          result = Executors.newSingleThreadExecutor(new DaemonThreadFactory("Otto background"));
+          background = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return executor of {@link ThreadMode#ASYNC} handlers */
+  public final Executor async() {
+    Executor result = async;
+    if (result == null) {
+      synchronized (this) {
+        result = async;
+        if (result == null) {
+          result = Executors.newCachedThreadPool(new DaemonThreadFactory("Otto async"));
+          async = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return executor which delivers events to handlers of {@code mode} posted on the current thread, null if none */
+  Executor executorFor(ThreadMode mode) {
+    switch (mode) {
+      case MAIN:
+        return isMainThread() ? null : main();
+      case BACKGROUND:
+        return isMainThread() ? background() : null;
+      case ASYNC:
+        return async();
+      default:
+        return null;
+    }
+  }
+
+  /** @return executor which runs the tasks of handlers of {@code mode}, null for {@link ThreadMode#POSTING} */
+  Executor executorOf(ThreadMode mode) {
+    switch (mode) {
+      case MAIN:
+        return main();
+      case BACKGROUND:
+        return background();
+      case ASYNC:
+        return async();
+      default:
+        return null;
+    }
+  }
+
+  /** Creates named daemon threads, so that idle executors don't keep the process alive. */
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable, name + " #" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+/**
+ * Dispatching state of one thread using a {@link Bus}. Instances are confined to their thread and are not
+ * thread-safe.
+ *
+ * @author Sergey Solovyev
+ */
+final class DispatchContext {
+
+  /** Events waiting to be dispatched by this thread. */
+  final DispatchQueue queue = new DispatchQueue();
+
+  /** True if this thread is currently dispatching events. */
+  boolean dispatching;
+
+  /** Event being delivered by this thread, null between events. */
+  Object event;
+
+  /** Handlers {@link #event} is delivered to. */
+  EventHandler[] handlers;
+
+  /**
+   * Index of the next handler in {@link #handlers}. Delivery of an event is resumed from it if a handler has thrown an
+   * exception.
+   */
+  int next;
+
+  /** True if delivery of {@link #event} to the remaining {@link #handlers} has been cancelled. */
+  boolean cancelled;
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+/**
+ * FIFO queue of events paired with the handlers they should be delivered to, one pair per posted event. Handlers of a
+ * pair are resolved (and ordered) when the event is posted.
+ *
+ * <p>Pairs are kept in two parallel ring buffers which only grow, so that once a queue has reached its working size
+ * offering and removing pairs does not allocate. Instances are confined to a single thread and are not thread-safe.
+ *
+ * @author Sergey Solovyev
+ */
+final class DispatchQueue {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private Object[] events = new Object[INITIAL_CAPACITY];
+  private EventHandler[][] handlers = new EventHandler[INITIAL_CAPACITY][];
+  /** Index of the first pair in the buffers. */
+  private int head;
+  /** Number of queued pairs. */
+  private int size;
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Appends {@code event} and its {@code handlers} to the end of the queue, the array must not be modified. */
+  void offer(Object event, EventHandler[] handlers) {
+    if (size == events.length) {
+      grow();
+    }
+    final int tail = (head + size) & (events.length - 1);
+    events[tail] = event;
+    this.handlers[tail] = handlers;
+    size++;
+  }
+
+  /**
+   * Replaces the most recently queued event of the same class as {@code event}, and its handlers, keeping the position
+   * of the replaced pair. Scans the whole queue, so should only be used for events which are conflated.
+   *
+   * @return false if no event of the class is queued, in which case nothing is changed.
+   */
+  boolean replace(Object event, EventHandler[] handlers) {
+    final Class<?> eventClass = event.getClass();
+    final int mask = events.length - 1;
+    for (int i = size - 1; i >= 0; i--) {
+      final int index = (head + i) & mask;
+      if (events[index].getClass() == eventClass) {
+        events[index] = event;
+        this.handlers[index] = handlers;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return event of the first pair in the queue, must not be called on an empty queue. */
+  Object headEvent() {
+    return events[head];
+  }
+
+  /** @return handlers of the first pair in the queue, must not be called on an empty queue. */
+  EventHandler[] headHandlers() {
+    return handlers[head];
+  }
+
+  /** Removes the first pair from the queue, must not be called on an empty queue. */
+  void removeHead() {
+    // release references so that delivered events can be collected
+    events[head] = null;
+    handlers[head] = null;
+    head = (head + 1) & (events.length - 1);
+    size--;
+  }
+
+  /** Doubles the capacity of the buffers, moving queued pairs to the start of the new buffers. */
+  private void grow() {
+    final int capacity = events.length;
+    final Object[] newEvents = new Object[capacity << 1];
+    final EventHandler[][] newHandlers = new EventHandler[capacity << 1][];
+    final int firstPart = capacity - head;
+    System.arraycopy(events, head, newEvents, 0, firstPart);
+    System.arraycopy(events, 0, newEvents, firstPart, head);
+    System.arraycopy(handlers, head, newHandlers, 0, firstPart);
+    System.arraycopy(handlers, 0, newHandlers, firstPart, head);
+    events = newEvents;
+    handlers = newHandlers;
+    head = 0;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squareup.otto;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dispatch tables of a {@link Bus}, see {@link Bus#getDispatchTable(Class)}, indexed by posted class.
+ *
+ * <p>The cache doesn't prevent classes from being unloaded. Tables of classes visible to the class loader of Otto are
+ * kept in a concurrent map which is read without locking: such classes can't be unloaded before the bus itself. Tables
+ * of other classes, f.e. of a plugin loaded by a child class loader, are kept in a map with weakly referenced keys,
+ * which is read under a lock.
+ *
+ * <p>This class is safe for concurrent use.
+ *
+ * @author Sergey Solovyev
+ */
+final class DispatchTableCache {
+
+  private static final ClassLoader OTTO_CLASS_LOADER = DispatchTableCache.class.getClassLoader();
+
+  /** Tables of classes which outlive the bus. */
+  private final ConcurrentMap<Class<?>, EventHandler[]> tables = new ConcurrentHashMap<Class<?>, EventHandler[]>();
+  /** Tables of classes which might be unloaded. Guarded by itself. */
+  private final Map<Class<?>, EventHandler[]> unloadableTables = new WeakHashMap<Class<?>, EventHandler[]>();
+
+  /** @return table of {@code eventClass}, {@code null} if none is cached. */
+  EventHandler[] get(Class<?> eventClass) {
+    final EventHandler[] table = tables.get(eventClass);
+    if (table != null || isVisibleToOtto(eventClass)) {
+      return table;
+    }
+    synchronized (unloadableTables) {
+      return unloadableTables.get(eventClass);
+    }
+  }
+
+  void put(Class<?> eventClass, EventHandler[] table) {
+    if (isVisibleToOtto(eventClass)) {
+      tables.put(eventClass, table);
+    } else {
+      synchronized (unloadableTables) {
+        unloadableTables.put(eventClass, table);
+      }
+    }
+  }
+
+  /** Removes the table of {@code eventClass} if it is still {@code table}. */
+  void remove(Class<?> eventClass, EventHandler[] table) {
+    if (isVisibleToOtto(eventClass)) {
+      tables.remove(eventClass, table);
+    } else {
+      synchronized (unloadableTables) {
+        if (unloadableTables.get(eventClass) == table) {
+          unloadableTables.remove(eventClass);
+        }
+      }
+    }
+  }
+
+  /** Removes the table of {@code eventClass}. */
+  void remove(Class<?> eventClass) {
+    if (isVisibleToOtto(eventClass)) {
+      tables.remove(eventClass);
+    } else {
+      synchronized (unloadableTables) {
+        unloadableTables.remove(eventClass);
+      }
+    }
+  }
+
+  /** Removes the tables of {@code eventType} and all classes assignable to it. */
+  void removeAssignableTo(Class<?> eventType) {
+    for (Class<?> eventClass : tables.keySet()) {
+      if (eventType.isAssignableFrom(eventClass)) {
+        tables.remove(eventClass);
+      }
+    }
+    synchronized (unloadableTables) {
+      final Iterator<Class<?>> eventClasses = unloadableTables.keySet().iterator();
+      while (eventClasses.hasNext()) {
+        if (eventType.isAssignableFrom(eventClasses.next())) {
+          eventClasses.remove();
+        }
+      }
+    }
+  }
+
+  void clear() {
+    tables.clear();
+    synchronized (unloadableTables) {
+      unloadableTables.clear();
+    }
+  }
+
+  /**
+   * @return true if {@code eventClass} is loaded by the class loader of Otto or one of its ancestors, thus, it can't be
+   *     unloaded while Otto is loaded.
+   */
+  static boolean isVisibleToOtto(Class<?> eventClass) {
+    final ClassLoader classLoader = eventClass.getClassLoader();
+    if (classLoader == null) {
+      // bootstrap class
+      return true;
+    }
+    for (ClassLoader ancestor = OTTO_CLASS_LOADER; ancestor != null; ancestor = ancestor.getParent()) {
+      if (ancestor == classLoader) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -36,6 +36,18 @@ interface EventHandler {
    */
   void invalidate();
 
+  /**
+   * @return priority of this {@link EventHandler}, handlers with higher priority receive an event first
+   * @see Subscribe#priority()
+   */
+  int getPriority();
+
+  /**
+   * @return thread on which this {@link EventHandler} receives events
+   * @see Subscribe#thread()
+   */
+  ThreadMode getThreadMode();
+
   /**
    * Delivers event to a subscriber
    *
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe set of the {@link EventHandler}s registered for one event type, iterated in order of
+ * {@link EventHandler#getPriority() priority} and then of registration.
+ *
+ * <p>Handlers are indexed by a hash map, so adding or removing a handler takes constant time regardless of how many
+ * handlers are registered. Readers iterate an immutable array snapshot without locking; the snapshot is rebuilt
+ * lazily (and sorted) on the first read after a modification, so a burst of registrations costs a single copy and
+ * posting events doesn't pay for ordering.
+ *
+ * @author Sergey Solovyev
+ */
+final class EventHandlerSet extends AbstractSet<EventHandler> {
+
+  static final EventHandler[] NO_HANDLERS = new EventHandler[0];
+
+  /** Orders handlers by descending priority, sorting with it is stable. */
+  static final Comparator<EventHandler> PRIORITY_ORDER = new Comparator<EventHandler>() {
+    @Override
+    public int compare(EventHandler l, EventHandler r) {
+      final int lp = l.getPriority();
+      final int rp = r.getPriority();
+      return lp > rp ? -1 : (lp == rp ? 0 : 1);
+    }
+  };
+
+  /** Registered handlers, each mapped to itself. Guarded by {@code this}. */
+  private final Map<EventHandler, EventHandler> handlers = new LinkedHashMap<EventHandler, EventHandler>();
+
+  /** Handlers at the time of the last read, {@code null} if modified since. */
+  private volatile EventHandler[] snapshot = NO_HANDLERS;
+
+  /**
+   * Retrieves the registered handlers. The returned array is shared and must not be modified.
+   *
+   * @return registered handlers in order of priority, highest first, and then of registration, empty if there are none.
+   */
+  EventHandler[] snapshot() {
+    EventHandler[] result = snapshot;
+    if (result == null) {
+      synchronized (this) {
+        result = snapshot;
+        if (result == null) {
+          result = handlers.isEmpty() ? NO_HANDLERS : handlers.keySet().toArray(new EventHandler[handlers.size()]);
+          Arrays.sort(result, PRIORITY_ORDER);
+          snapshot = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Removes the handler equal to {@code handler} from this set.
+   *
+   * @return the removed handler, which might be a different instance than {@code handler}, or {@code null} if no
+   *     such handler is registered.
+   */
+  synchronized EventHandler extract(EventHandler handler) {
+    final EventHandler removed = handlers.remove(handler);
+    if (removed != null) {
+      snapshot = null;
+    }
+    return removed;
+  }
+
+  @Override public synchronized boolean add(EventHandler handler) {
+    if (handlers.containsKey(handler)) {
+      return false;
+    }
+    handlers.put(handler, handler);
+    snapshot = null;
+    return true;
+  }
+
+  @Override public synchronized boolean addAll(Collection<? extends EventHandler> c) {
+    boolean modified = false;
+    for (EventHandler handler : c) {
+      modified |= add(handler);
+    }
+    return modified;
+  }
+
+  @Override public synchronized boolean remove(Object o) {
+    return o instanceof EventHandler && extract((EventHandler) o) != null;
+  }
+
+  @Override public synchronized boolean removeAll(Collection<?> c) {
+    boolean modified = false;
+    for (Object o : c) {
+      modified |= remove(o);
+    }
+    return modified;
+  }
+
+  @Override public synchronized boolean contains(Object o) {
+    return handlers.containsKey(o);
+  }
+
+  @Override public synchronized boolean containsAll(Collection<?> c) {
+    for (Object o : c) {
+      if (!handlers.containsKey(o)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public synchronized int size() {
+    return handlers.size();
+  }
+
+  /** Iterates a snapshot of this set, the returned iterator does not support removal. */
+  @Override public Iterator<EventHandler> iterator() {
+    return Arrays.asList(snapshot()).iterator();
+  }
+}
@@ -31,7 +31,7 @@ class EventProducer {
 
   /** Object sporting the producer method. */
   final Object target;
-  /** Producer method. */
+  /** Producer method, {@code null} if a subclass calls it directly. */
   private final Method method;
   /** Object hash code. */
   private final int hashCode;
@@ -56,6 +56,20 @@ class EventProducer {
     hashCode = (prime + method.hashCode()) * prime + target.hashCode();
   }
 
+  /**
+   * Creates a producer which calls its producer method directly, subclasses must override
+   * {@link #invokeProducer()}, {@link #equals(Object)} and {@link #hashCode()}.
+   */
+  EventProducer(Object target) {
+    if (target == null) {
+      throw new NullPointerException("EventProducer target cannot be null.");
+    }
+
+    this.target = target;
+    this.method = null;
+    this.hashCode = 0;
+  }
+
   public boolean isValid() {
     return valid;
   }
@@ -80,6 +94,16 @@ class EventProducer {
     if (!valid) {
       throw new IllegalStateException(toString() + " has been invalidated and can no longer produce events.");
     }
+    return invokeProducer();
+  }
+
+  /**
+   * Calls the producer method on {@link #target}.
+   *
+   * @throws java.lang.reflect.InvocationTargetException  if the producer method throws any {@link Throwable} that is
+   *     not an {@link Error}.
+   */
+  Object invokeProducer() throws InvocationTargetException {
     try {
       return method.invoke(target);
     } catch (IllegalAccessException e) {
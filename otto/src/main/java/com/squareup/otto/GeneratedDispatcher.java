@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+/**
+ * Base class for generated {@link EventHandler}s which deliver events to all subscriber methods of a listener class.
+ * Each instance handles events for one subscriber's method, selected by {@link #method}, thus, only one class is
+ * generated per listener class.
+ *
+ * @author Sergey Solovyev
+ */
+abstract class GeneratedDispatcher extends ListenerEventHandler {
+
+  /** Index of the subscriber's method in the generated dispatcher. */
+  protected final int method;
+
+  protected GeneratedDispatcher(Object listener, int method, int priority, ThreadMode threadMode) {
+    super(listener, priority, threadMode);
+    this.method = method;
+  }
+
+  @Override
+  public String toString() {
+    return "[EventHandler " + getClass().getName() + "#" + method + "]";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    // the class and the method index identify the subscriber method, the listener is compared by identity as
+    // ReflectiveEventHandler does
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final GeneratedDispatcher that = (GeneratedDispatcher) o;
+    final Object listener = getListener();
+    return method == that.method && listener != null && listener == that.getListener();
+  }
+
+  @Override
+  public int hashCode() {
+    // method index is small, thus, it's added to the listener's hash code as is
+    return getListenerHashCode() + method;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+/**
+ * Base class for generated {@link EventHandler}s.
+ * Contains {@link #equals(Object)} and {@link #hashCode()} methods which assume that implementors of this class are
+ * anonymous classes, one per subscriber's method.
+ *
+ * @author Sergey Solovyev
+ */
+abstract class GeneratedEventHandler extends ListenerEventHandler {
+
+
+  protected GeneratedEventHandler(Object listener, int priority, ThreadMode threadMode) {
+    super(listener, priority, threadMode);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    // each anonymous class has its own unique class name, thus, checking class name should be enough to distinguish
+    // one handler from another
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    // but there might be several subscribers with the same class names (f.e. a fragment might be instantiated several
+    // times), thus, subscriber should also be checked
+    final GeneratedEventHandler that = (GeneratedEventHandler) o;
+    final Object listener = getListener();
+    return listener != null && listener.equals(that.getListener());
+  }
+
+  @Override
+  public int hashCode() {
+    return getListenerHashCode();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Base class for generated {@link EventProducer}s which call producer methods directly.
+ * Contains {@link #equals(Object)} and {@link #hashCode()} methods which assume that implementors of this class are
+ * anonymous classes, one per producer's method.
+ *
+ * @author Sergey Solovyev
+ */
+abstract class GeneratedEventProducer extends EventProducer {
+
+  protected GeneratedEventProducer(Object listener) {
+    super(listener);
+  }
+
+  /** Calls the producer method on {@link #target}. */
+  protected abstract Object produce() throws Exception;
+
+  @Override
+  Object invokeProducer() throws InvocationTargetException {
+    try {
+      return produce();
+    } catch (Exception e) {
+      // same contract as a reflective call: anything but an Error is wrapped
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "[EventProducer " + getClass().getName() + "]";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    // the class identifies the producer method, the target is compared by identity as EventProducer does
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return target == ((GeneratedEventProducer) o).target;
+  }
+
+  @Override
+  public int hashCode() {
+    return target.hashCode();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of flattened type hierarchies, see {@link Bus#flattenHierarchy(Class)}. A hierarchy is an array of the class
+ * and its supertypes, most specific first, so it can be iterated by index without allocating.
+ *
+ * <p>The cache doesn't prevent classes from being unloaded: classes are weakly referenced keys and hierarchies are
+ * weakly referenced values too, since a hierarchy references its class (and the class loaders of all its supertypes).
+ * A hierarchy dropped by the garbage collector is simply computed again, hierarchies are only needed when dispatch
+ * tables are resolved, not on every post.
+ *
+ * <p>This class is safe for concurrent use.
+ *
+ * @author Sergey Solovyev
+ */
+final class HierarchyCache {
+
+  /** Hierarchies of superclasses only. */
+  static final HierarchyCache CLASSES = new HierarchyCache(false);
+  /** Hierarchies of superclasses and all the interfaces they implement. */
+  static final HierarchyCache CLASSES_AND_INTERFACES = new HierarchyCache(true);
+
+  private final boolean interfaces;
+  /** Computed hierarchies, {@code Class<?>[]}, indexed by class. Guarded by {@code this}. */
+  private final Map<Class<?>, Reference<Object>> hierarchies = new WeakHashMap<Class<?>, Reference<Object>>();
+
+  private HierarchyCache(boolean interfaces) {
+    this.interfaces = interfaces;
+  }
+
+  /**
+   * Retrieves the flattened type hierarchy of {@code concreteClass}. The returned array is shared and must not be
+   * modified.
+   *
+   * @return {@code concreteClass} followed by its supertypes in breadth-first order, each type once, and
+   *     {@code Object} last.
+   */
+  Class<?>[] get(Class<?> concreteClass) {
+    Class<?>[] hierarchy;
+    synchronized (this) {
+      final Reference<Object> reference = hierarchies.get(concreteClass);
+      hierarchy = reference == null ? null : (Class<?>[]) reference.get();
+    }
+    if (hierarchy == null) {
+      // computed without holding the lock, concurrent callers might compute equal hierarchies
+      hierarchy = flatten(concreteClass);
+      synchronized (this) {
+        hierarchies.put(concreteClass, new WeakReference<Object>(hierarchy));
+      }
+    }
+    return hierarchy;
+  }
+
+  private Class<?>[] flatten(Class<?> concreteClass) {
+    final List<Class<?>> classes = new ArrayList<Class<?>>();
+    final Set<Class<?>> visited = new HashSet<Class<?>>();
+    classes.add(concreteClass);
+    visited.add(concreteClass);
+    // the list doubles as the queue of the breadth-first walk
+    for (int i = 0; i < classes.size(); i++) {
+      final Class<?> clazz = classes.get(i);
+      final Class<?> parent = clazz.getSuperclass();
+      if (parent != null && parent != Object.class && visited.add(parent)) {
+        classes.add(parent);
+      }
+      if (interfaces) {
+        for (Class<?> implemented : clazz.getInterfaces()) {
+          if (visited.add(implemented)) {
+            classes.add(implemented);
+          }
+        }
+      }
+    }
+    if (concreteClass != Object.class) {
+      // the least specific type of all
+      classes.add(Object.class);
+    }
+    return classes.toArray(new Class<?>[classes.size()]);
+  }
+}
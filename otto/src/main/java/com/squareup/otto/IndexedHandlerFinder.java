@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link HandlerFinder} which finds producer and subscriber methods using the index generated by the annotation
+ * processor ('-Aotto.generate=index'), thus, classes are not scanned with reflection at runtime.
+ *
+ * <p>The index is a resource per listener class named after the class (see {@link #getIndexResource(String)}), thus,
+ * listeners may be compiled in different modules and no two modules ship the same resource, which packaging tools
+ * (f.e. of Android) would keep only one copy of. The entry of a class is loaded when the class is registered for the
+ * first time, from the class loader of the class itself, and its {@link Method}s are resolved then.
+ *
+ * <p>Classes missing from the index are assumed to declare no {@link Produce} or {@link Subscribe} methods, thus,
+ * every module containing listeners must be processed. Anonymous and local classes are not visible to annotation
+ * processors, their methods are found with reflection as {@link HandlerFinder#ANNOTATED} does.
+ *
+ * @author Sergey Solovyev
+ */
+public final class IndexedHandlerFinder implements HandlerFinder {
+
+  /** Directory of the index entries in the class path. */
+  private static final String INDEX_DIRECTORY = "META-INF/otto/";
+  private static final String COMMENT = "#";
+
+  private final ClassLoader classLoader;
+  /** Producer and subscriber methods (including inherited ones) for each registered class. */
+  private final ConcurrentMap<Class<?>, ListenerMethods> methodsCache =
+      new ConcurrentHashMap<Class<?>, ListenerMethods>();
+
+  /** Creates a finder reading the index from the class loader of each listener class or, else, of Otto. */
+  public IndexedHandlerFinder() {
+    this(IndexedHandlerFinder.class.getClassLoader());
+  }
+
+  /**
+   * Creates a finder reading the index from the class loader of each listener class or, else, the given class loader.
+   *
+   * @param classLoader Class loader to look up the index in if the class loader of a listener class has no entry.
+   */
+  public IndexedHandlerFinder(ClassLoader classLoader) {
+    if (classLoader == null) {
+      throw new NullPointerException("Class loader must not be null.");
+    }
+    this.classLoader = classLoader;
+  }
+
+  @Override
+  public Map<Class<?>, EventProducer> findAllProducers(Object listener) {
+    final Class<?> listenerClass = listener.getClass();
+    if (!isIndexed(listenerClass)) {
+      return AnnotatedHandlerFinder.findAllProducers(listener);
+    }
+    return AnnotatedHandlerFinder.findAllProducers(listener, getListenerMethods(listenerClass).producerMethods);
+  }
+
+  @Override
+  public Map<Class<?>, Set<EventHandler>> findAllSubscribers(Object listener) {
+    final Class<?> listenerClass = listener.getClass();
+    if (!isIndexed(listenerClass)) {
+      return AnnotatedHandlerFinder.findAllSubscribers(listener);
+    }
+    return AnnotatedHandlerFinder.findAllSubscribers(listener, getListenerMethods(listenerClass).subscriberMethods);
+  }
+
+  private static boolean isIndexed(Class<?> listenerClass) {
+    return !listenerClass.isAnonymousClass() && !listenerClass.isLocalClass();
+  }
+
+  private ListenerMethods getListenerMethods(Class<?> listenerClass) {
+    ListenerMethods methods = methodsCache.get(listenerClass);
+    if (methods == null) {
+      // only index lookups are repeated if several threads resolve the same class concurrently
+      methods = new ListenerMethods();
+      final Class<?> superclass = listenerClass.getSuperclass();
+      if (superclass != null && !AnnotatedHandlerFinder.isPlatformClass(listenerClass)) {
+        final URL index = findIndex(listenerClass);
+        if (index != null) {
+          parseMethods(listenerClass, index, methods.producerMethods, methods.subscriberMethods);
+        }
+        final ListenerMethods inherited = getListenerMethods(superclass);
+        AnnotatedHandlerFinder.inheritProducerMethods(inherited.producerMethods, methods.producerMethods);
+        AnnotatedHandlerFinder.inheritSubscriberMethods(inherited.subscriberMethods, methods.subscriberMethods);
+      }
+      final ListenerMethods oldMethods = methodsCache.putIfAbsent(listenerClass, methods);
+      if (oldMethods != null) {
+        methods = oldMethods;
+      }
+    }
+    return methods;
+  }
+
+  /**
+   * Looks up the index entry of {@code listenerClass} with its own class loader, so that listeners loaded by a child
+   * class loader, f.e. of a plugin, are found, falling back to {@link #classLoader}.
+   *
+   * @return index entry, {@code null} if there is none.
+   */
+  private URL findIndex(Class<?> listenerClass) {
+    final String resource = getIndexResource(listenerClass.getName());
+    final ClassLoader listenerClassLoader = listenerClass.getClassLoader();
+    if (listenerClassLoader != null && listenerClassLoader != classLoader) {
+      final URL index = listenerClassLoader.getResource(resource);
+      if (index != null) {
+        return index;
+      }
+    }
+    return classLoader.getResource(resource);
+  }
+
+  /**
+   * Resolves methods listed in the index entry of a class. The entry lists a method descriptor per line:
+   * {@code name(eventType)} for subscribers and {@code name()} for producers, where {@code eventType} is a class name
+   * as accepted by {@link Class#forName(String)}. Empty lines and lines starting with '#' are ignored.
+   */
+  private static void parseMethods(Class<?> listenerClass, URL index, Map<Class<?>, Method> producerMethods,
+      Map<Class<?>, Set<Method>> subscriberMethods) {
+    for (String descriptor : readLines(index)) {
+      final int open = descriptor.indexOf('(');
+      if (open <= 0 || !descriptor.endsWith(")")) {
+        throw new IllegalStateException("Invalid index entry for " + listenerClass + ": " + descriptor);
+      }
+      final String name = descriptor.substring(0, open);
+      final String eventTypeName = descriptor.substring(open + 1, descriptor.length() - 1);
+      try {
+        if (eventTypeName.length() == 0) {
+          final Method method = listenerClass.getDeclaredMethod(name);
+          producerMethods.put(method.getReturnType(), method);
+        } else {
+          final Class<?> eventType = Class.forName(eventTypeName, false, listenerClass.getClassLoader());
+          final Method method = listenerClass.getDeclaredMethod(name, eventType);
+          Set<Method> methods = subscriberMethods.get(eventType);
+          if (methods == null) {
+            methods = new HashSet<Method>();
+            subscriberMethods.put(eventType, methods);
+          }
+          methods.add(method);
+        }
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Index is out of date for " + listenerClass + ": " + descriptor, e);
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException("Index is out of date for " + listenerClass + ": " + descriptor, e);
+      }
+    }
+  }
+
+  private static Set<String> readLines(URL index) {
+    final Set<String> result = new HashSet<String>();
+    try {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0 && !line.startsWith(COMMENT)) {
+            result.add(line);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read " + index, e);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the location of the index entry of the listener class with the given (binary) name in the class path.
+   */
+  static String getIndexResource(String listenerClassName) {
+    return INDEX_DIRECTORY + listenerClassName;
+  }
+
+  /** Producer and subscriber methods of a class. */
+  private static final class ListenerMethods {
+    final Map<Class<?>, Method> producerMethods = new HashMap<Class<?>, Method>();
+    final Map<Class<?>, Set<Method>> subscriberMethods = new HashMap<Class<?>, Set<Method>>();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Spins a {@link MethodInvoker} per handler method with {@link LambdaMetafactory}, thus, delivering an event is a plain
+ * interface call which the JIT can inline, without the argument array, access checks and exception wrapping of
+ * {@link Method#invoke(Object, Object...)}.
+ *
+ * <p>This class must not be loaded where {@code java.lang.invoke} is missing, f.e. on older Android versions, see
+ * {@link ReflectiveEventHandler}.
+ *
+ * @author Sergey Solovyev
+ */
+final class LambdaInvokers {
+
+  /** Invokers of the handler methods of classes visible to Otto, {@link #NONE} if a method can't be spun. */
+  private static final ConcurrentMap<Method, MethodInvoker> INVOKERS = new ConcurrentHashMap<Method, MethodInvoker>();
+
+  private static final MethodInvoker NONE = new MethodInvoker() {
+    @Override public void invoke(Object target, Object event) {
+      throw new UnsupportedOperationException();
+    }
+  };
+
+  private static final MethodType INVOKER_FACTORY_TYPE = MethodType.methodType(MethodInvoker.class);
+  private static final MethodType INVOKE_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  /**
+   * Retrieves the invoker of the handler {@code method}, spinning it on the first call. Spun classes call the method
+   * as Otto's own code does, so only public instance methods of public classes visible to the class loader of Otto
+   * (which also can't be unloaded before the cached invokers) are supported.
+   *
+   * @return invoker of {@code method}, {@code null} if it must be called through reflection.
+   */
+  static MethodInvoker getInvoker(Method method) {
+    if (!canSpin(method)) {
+      return null;
+    }
+    MethodInvoker invoker = INVOKERS.get(method);
+    if (invoker == null) {
+      // concurrent callers might spin the same method, only one invoker is kept
+      final MethodInvoker newInvoker = spin(method);
+      invoker = INVOKERS.putIfAbsent(method, newInvoker);
+      if (invoker == null) {
+        invoker = newInvoker;
+      }
+    }
+    return invoker == NONE ? null : invoker;
+  }
+
+  private static boolean canSpin(Method method) {
+    final Class<?> listenerClass = method.getDeclaringClass();
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    return parameterTypes.length == 1
+        && Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())
+        && isAccessible(listenerClass) && isAccessible(parameterTypes[0]);
+  }
+
+  private static boolean isAccessible(Class<?> clazz) {
+    return Modifier.isPublic(clazz.getModifiers()) && DispatchTableCache.isVisibleToOtto(clazz);
+  }
+
+  /** @return invoker of {@code method}, {@link #NONE} if it can't be spun. */
+  private static MethodInvoker spin(Method method) {
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      final CallSite site = LambdaMetafactory.metafactory(lookup, "invoke", INVOKER_FACTORY_TYPE, INVOKE_TYPE,
+          lookup.unreflect(method),
+          MethodType.methodType(void.class, method.getDeclaringClass(), method.getParameterTypes()[0]));
+      return (MethodInvoker) site.getTarget().invokeWithArguments();
+    } catch (Throwable e) {
+      // f.e. a LambdaConversionException: the method is still called through reflection
+      return NONE;
+    }
+  }
+
+  private LambdaInvokers() {
+    // No instances.
+  }
+}
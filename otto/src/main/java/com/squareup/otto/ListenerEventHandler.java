@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.ref.Reference;
+
+/**
+ * Base class for {@link EventHandler}s which deliver events to a method of a listener object. The listener is held
+ * strongly, unless the handler has been registered with {@link Bus#registerWeakly(Object)}: then it is only held by a
+ * weak reference and the handler becomes invalid once the listener has been collected.
+ *
+ * @author Sergey Solovyev
+ */
+abstract class ListenerEventHandler extends BaseEventHandler {
+
+  /** Listener held strongly, {@code null} if it is held by {@link #listenerReference}. */
+  private Object listener;
+  /** Reference to the listener if it is held weakly. */
+  private volatile Reference<Object> listenerReference;
+  /** Hash code of the listener, kept so that the hash code of the handler doesn't change once it is collected. */
+  private final int listenerHashCode;
+
+  protected ListenerEventHandler(Object listener, int priority, ThreadMode threadMode) {
+    super(priority, threadMode);
+    if (listener == null) {
+      throw new NullPointerException("EventHandler listener cannot be null.");
+    }
+    this.listener = listener;
+    this.listenerHashCode = listener.hashCode();
+  }
+
+  /** @return listener of this handler, {@code null} if it was held weakly and has been collected. */
+  final Object getListener() {
+    final Object strong = listener;
+    if (strong != null) {
+      return strong;
+    }
+    final Reference<Object> reference = listenerReference;
+    return reference == null ? null : reference.get();
+  }
+
+  /** @return hash code of the listener of this handler, available even after the listener has been collected. */
+  final int getListenerHashCode() {
+    return listenerHashCode;
+  }
+
+  /**
+   * Drops the strong reference to the listener, which is from now on only reachable through {@code reference}. Must
+   * be called before the handler is registered.
+   */
+  final void holdWeakly(Reference<Object> reference) {
+    listenerReference = reference;
+    listener = null;
+  }
+
+  /** @return false if invalidated or if the listener has been collected. */
+  @Override
+  public boolean isValid() {
+    return super.isValid() && getListener() != null;
+  }
+
+  /** Delivers {@code event} to the listener, unless it has been collected meanwhile. */
+  @Override
+  public void handleEvent(Object event) {
+    final Object target = getListener();
+    if (target != null) {
+      handleEvent(target, event);
+    }
+  }
+
+  /**
+   * Delivers {@code event} to the handler method of {@code listener}.
+   *
+   * @param listener listener of this handler.
+   * @param event event to be consumed.
+   */
+  protected abstract void handleEvent(Object listener, Object event);
+}
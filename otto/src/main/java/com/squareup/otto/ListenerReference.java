@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Weak reference to a listener registered with {@link Bus#registerWeakly(Object)}, shared by all its handlers. Once
+ * the listener has been collected, the reference is enqueued and its {@link #handlers} are purged by the bus.
+ *
+ * @author Sergey Solovyev
+ */
+final class ListenerReference extends WeakReference<Object> {
+
+  /** Weakly registered handlers of the listener, indexed by event type. */
+  final Map<Class<?>, Set<EventHandler>> handlers;
+
+  ListenerReference(Object listener, ReferenceQueue<Object> queue, Map<Class<?>, Set<EventHandler>> handlers) {
+    super(listener, queue);
+    this.handlers = handlers;
+  }
+}
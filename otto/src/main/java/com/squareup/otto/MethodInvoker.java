@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+/**
+ * Calls a handler method without reflection, see {@link LambdaInvokers}.
+ *
+ * @author Sergey Solovyev
+ */
+interface MethodInvoker {
+
+  /**
+   * Calls the handler method on {@code target} with {@code event} as its only argument.
+   *
+   * @throws Exception any exception thrown by the handler method, as-is.
+   */
+  void invoke(Object target, Object event) throws Exception;
+}
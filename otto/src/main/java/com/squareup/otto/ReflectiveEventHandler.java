@@ -29,47 +29,95 @@ import java.lang.reflect.Method;
  * <p>Two EventHandlers are equivalent when they refer to the same method on the same object (not class).   This
  * property is used to ensure that no handler method is registered more than once.
  *
+ * <p>Where {@code java.lang.invoke} is available, public methods of public classes are called through an invoker spun
+ * once per method by {@link LambdaInvokers}, other methods are called with reflection.
+ *
  * @author Cliff Biffle
  * @author Sergey Solovyev
  */
-class ReflectiveEventHandler extends BaseEventHandler {
+class ReflectiveEventHandler extends ListenerEventHandler {
+
+  /** True if handler methods can be called without reflection, see {@link LambdaInvokers}. */
+  private static final boolean LAMBDA_INVOKERS = isClassAvailable("java.lang.invoke.LambdaMetafactory");
 
-  /** Object sporting the handler method. */
-  private final Object target;
   /** Handler method. */
   private final Method method;
+  /** Calls {@link #method} without reflection, {@code null} if it's called with {@link Method#invoke}. */
+  private final MethodInvoker invoker;
   /** Object hash code. */
   private final int hashCode;
 
   ReflectiveEventHandler(Object target, Method method) {
-    if (target == null) {
-      throw new NullPointerException("EventHandler target cannot be null.");
-    }
+    super(requireTarget(target), getPriority(method), getThreadMode(method));
     if (method == null) {
       throw new NullPointerException("EventHandler method cannot be null.");
     }
 
-    this.target = target;
     this.method = method;
-    method.setAccessible(true);
+    this.invoker = LAMBDA_INVOKERS ? LambdaInvokers.getInvoker(method) : null;
+    if (invoker == null) {
+      method.setAccessible(true);
+    }
 
     // Compute hash code eagerly since we know it will be used frequently and we cannot estimate the runtime of the
     // target's hashCode call.
     final int prime = 31;
-    hashCode = (prime + method.hashCode()) * prime + target.hashCode();
+    hashCode = (prime + method.hashCode()) * prime + getListenerHashCode();
+  }
+
+  private static boolean isClassAvailable(String className) {
+    try {
+      Class.forName(className, false, ReflectiveEventHandler.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Object requireTarget(Object target) {
+    if (target == null) {
+      throw new NullPointerException("EventHandler target cannot be null.");
+    }
+    return target;
+  }
+
+  /** @return priority declared by the {@link Subscribe} annotation of the {@code method}, 0 if it's not annotated. */
+  private static int getPriority(Method method) {
+    final Subscribe subscribe = method == null ? null : method.getAnnotation(Subscribe.class);
+    return subscribe == null ? 0 : subscribe.priority();
   }
 
   /**
-   * Invokes the wrapped handler method to handle {@code event}.
+   * @return thread mode declared by the {@link Subscribe} annotation of the {@code method}, {@link ThreadMode#POSTING}
+   * if it's not annotated.
+   */
+  private static ThreadMode getThreadMode(Method method) {
+    final Subscribe subscribe = method == null ? null : method.getAnnotation(Subscribe.class);
+    return subscribe == null ? ThreadMode.POSTING : subscribe.thread();
+  }
+
+  /**
+   * Invokes the wrapped handler method of {@code target} to handle {@code event}.
    *
+   * @param target  object sporting the handler method
    * @param event  event to handle
    * @throws java.lang.IllegalStateException  if previously invalidated.
    */
   @Override
-  public void handleEvent(Object event) {
+  protected void handleEvent(Object target, Object event) {
     if (!isValid()) {
       throw new IllegalStateException(toString() + " has been invalidated and can no longer handle events.");
     }
+    final MethodInvoker invoker = this.invoker;
+    if (invoker != null) {
+      try {
+        invoker.invoke(target, event);
+      } catch (Exception e) {
+        throw new RuntimeException("Could not dispatch event: " + event.getClass() + " to handler " + this + ": "
+            + e.getMessage(), e);
+      }
+      return;
+    }
     try {
       method.invoke(target, event);
     } catch (IllegalAccessException e) {
@@ -105,7 +153,8 @@ class ReflectiveEventHandler extends BaseEventHandler {
 
     final ReflectiveEventHandler other = (ReflectiveEventHandler) obj;
 
-    return method.equals(other.method) && target == other.target;
+    final Object target = getListener();
+    return method.equals(other.method) && target != null && target == other.getListener();
   }
 
 }
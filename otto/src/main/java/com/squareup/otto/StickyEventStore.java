@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Last sticky event posted of each event class, see {@link Bus#postSticky(Object)}. The store is bounded: once it holds
+ * {@code capacity} events, storing an event of a new class evicts the event which was stored least recently.
+ *
+ * <p>This class is safe for concurrent use.
+ *
+ * @author Sergey Solovyev
+ */
+final class StickyEventStore {
+
+  private static final Object[] NO_EVENTS = new Object[0];
+
+  /** Stored events indexed by their class, in order of storing. */
+  private final Map<Class<?>, Object> events = new LinkedHashMap<Class<?>, Object>();
+  private int capacity;
+  /** Number of stored events, read without locking by {@link #isEmpty()}. */
+  private volatile int size;
+
+  StickyEventStore(int capacity) {
+    setCapacity(capacity);
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Sets the maximum number of stored events, evicting the least recently stored ones beyond it. */
+  synchronized void setCapacity(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive, was " + capacity + ".");
+    }
+    this.capacity = capacity;
+    evict();
+  }
+
+  /** Stores {@code event}, replacing the event of the same class if any. */
+  synchronized void put(Object event) {
+    final Class<?> eventClass = event.getClass();
+    // removed first so that the event becomes the most recently stored one
+    events.remove(eventClass);
+    events.put(eventClass, event);
+    evict();
+  }
+
+  synchronized Object get(Class<?> eventClass) {
+    return events.get(eventClass);
+  }
+
+  synchronized Object remove(Class<?> eventClass) {
+    final Object event = events.remove(eventClass);
+    size = events.size();
+    return event;
+  }
+
+  /** Removes {@code event} if it is still the stored event of its class. */
+  synchronized boolean remove(Object event) {
+    final Class<?> eventClass = event.getClass();
+    if (events.get(eventClass) != event) {
+      return false;
+    }
+    events.remove(eventClass);
+    size = events.size();
+    return true;
+  }
+
+  synchronized void clear() {
+    events.clear();
+    size = 0;
+  }
+
+  /** @return stored events, least recently stored first. */
+  synchronized Object[] snapshot() {
+    return events.isEmpty() ? NO_EVENTS : events.values().toArray();
+  }
+
+  private void evict() {
+    final Iterator<Object> eldest = events.values().iterator();
+    while (events.size() > capacity) {
+      eldest.next();
+      eldest.remove();
+    }
+    size = events.size();
+  }
+}
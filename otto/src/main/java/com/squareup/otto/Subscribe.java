@@ -28,10 +28,22 @@ import java.lang.annotation.Target;
  * <p>If this annotation is applied to methods with zero parameters or more than one parameter, the object containing
  * the method will not be able to register for event delivery from the {@link Bus}. Otto fails fast by throwing
  * runtime exceptions in these cases.
+ * <p>Handlers with higher {@link #priority()} receive an event before handlers with lower priority, see
+ * {@link Bus#cancelEventDelivery(Object)}.
+ * <p>Handlers are called on the thread which posted an event unless a different {@link #thread()} is requested.
  *
  * @author Cliff Biffle
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Subscribe {
+
+  /**
+   * Priority of the handler, handlers with higher priority receive an event first. Handlers with the same priority
+   * receive it in order of registration.
+   */
+  int priority() default 0;
+
+  /** Thread on which the handler receives events, by default, the thread which posted the event. */
+  ThreadMode thread() default ThreadMode.POSTING;
 }
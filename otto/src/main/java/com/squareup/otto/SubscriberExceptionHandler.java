@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handles exceptions thrown by handlers while a {@link Bus} delivers posted events. Whatever the policy, the bus keeps
+ * delivering the event to its remaining handlers and drains all queued events before {@code post} returns.
+ *
+ * <p>Exceptions of handlers delivered on an executor, see {@link ThreadMode} and {@link AsyncBus}, are handled on the
+ * executor's thread, an exception rethrown there is thrown to the executor once the task's events are delivered.
+ *
+ * @author Sergey Solovyev
+ */
+public interface SubscriberExceptionHandler {
+
+  /**
+   * Handles {@code exception} thrown by a handler of {@code event}. Implementations may rethrow {@code exception} (or
+   * any runtime exception): the first exception thrown is then rethrown by the bus once the queue has been drained.
+   *
+   * @param exception exception thrown by the handler, wrapping the handler's exception if it was a checked one.
+   * @param bus Event bus instance which delivered {@code event}.
+   * @param event event being delivered.
+   */
+  void handleException(RuntimeException exception, Bus bus, Object event);
+
+
+  /** A {@link SubscriberExceptionHandler} which ignores exceptions and continues delivery. */
+  SubscriberExceptionHandler CONTINUE = new SubscriberExceptionHandler() {
+    @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+      // Ignore the exception.
+    }
+  };
+
+  /** A {@link SubscriberExceptionHandler} which logs exceptions with {@link Logger} and continues delivery. */
+  SubscriberExceptionHandler LOG = new SubscriberExceptionHandler() {
+    @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+      Logger.getLogger(Bus.class.getName())
+          .log(Level.SEVERE, "Handler of " + event.getClass() + " on " + bus + " threw an exception.", exception);
+    }
+  };
+
+  /**
+   * A {@link SubscriberExceptionHandler} which rethrows the first exception from {@code post} once all queued events
+   * have been delivered, the default.
+   */
+  SubscriberExceptionHandler RETHROW_AFTER_DRAIN = new SubscriberExceptionHandler() {
+    @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+      throw exception;
+    }
+  };
+}
@@ -41,7 +41,7 @@ public interface ThreadEnforcer {
   };
 
   /** A {@link ThreadEnforcer} that confines {@link Bus} methods to the main thread. */
-  ThreadEnforcer MAIN = new ThreadEnforcer() {
+  ThreadEnforcer MAIN = new SingleThreaded() {
     @Override public void enforce(Bus bus) {
       if (Looper.myLooper() != Looper.getMainLooper()) {
         throw new IllegalStateException("Event bus " + bus + " accessed from non-main thread " + Looper.myLooper());
@@ -49,4 +49,12 @@ public interface ThreadEnforcer {
     }
   };
 
+  /**
+   * A {@link ThreadEnforcer} which guarantees that {@link #enforce(Bus)} throws unless it is called on one and the same
+   * thread for the lifetime of the bus, such as {@link #MAIN}. A {@link Bus} using such an enforcer keeps its
+   * dispatching state in a field rather than in a {@link ThreadLocal}.
+   */
+  interface SingleThreaded extends ThreadEnforcer {
+  }
+
 }
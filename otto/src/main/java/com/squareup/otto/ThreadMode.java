@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.otto;
+
+/**
+ * Thread on which a handler receives events, see {@link Subscribe#thread()}. Executors used for modes other than
+ * {@link #POSTING} are provided by {@link DeliveryExecutors}.
+ *
+ * <p>Handlers of an event which share a mode are delivered to with a single executor task per posted event, in order of
+ * their {@link Subscribe#priority()}.
+ *
+ * @author Sergey Solovyev
+ */
+public enum ThreadMode {
+
+  /** Handler is called on the thread which posted the event. This is the default and has no overhead. */
+  POSTING,
+
+  /**
+   * Handler is called on the main thread: directly if the event is posted on the main thread, otherwise, on
+   * {@link DeliveryExecutors#main()}.
+   */
+  MAIN,
+
+  /**
+   * Handler is called on a background thread: directly if the event is posted on a background thread, otherwise, on
+   * {@link DeliveryExecutors#background()} which delivers events one at a time.
+   */
+  BACKGROUND,
+
+  /** Handler is always called on {@link DeliveryExecutors#async()}, never on the posting thread. */
+  ASYNC
+}
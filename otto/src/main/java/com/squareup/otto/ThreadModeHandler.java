@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link EventHandler} which delivers an event to consecutive handlers of one {@link ThreadMode} with a single executor
+ * task. Instances are created by {@link Bus} for its dispatch tables and are never registered.
+ *
+ * @author Sergey Solovyev
+ */
+final class ThreadModeHandler implements EventHandler {
+
+  private final Bus bus;
+  private final ThreadMode threadMode;
+  /** Handlers of {@link #threadMode} ordered by priority. */
+  private final EventHandler[] handlers;
+  private final DeliveryExecutors executors;
+
+  ThreadModeHandler(Bus bus, ThreadMode threadMode, EventHandler[] handlers, DeliveryExecutors executors) {
+    this.bus = bus;
+    this.threadMode = threadMode;
+    this.handlers = handlers;
+    this.executors = executors;
+  }
+
+  /** Always valid, validity of the grouped handlers is checked when the event is delivered to them. */
+  @Override
+  public boolean isValid() {
+    return true;
+  }
+
+  @Override
+  public void invalidate() {
+    // never registered, thus, never invalidated
+  }
+
+  @Override
+  public int getPriority() {
+    return handlers[0].getPriority();
+  }
+
+  @Override
+  public ThreadMode getThreadMode() {
+    return threadMode;
+  }
+
+  @Override
+  public void handleEvent(final Object event) {
+    final Executor executor = executors.executorFor(threadMode);
+    if (executor == null) {
+      // already on the right thread, a handler may cancel delivery to the following ones
+      deliver(event, true);
+    } else {
+      try {
+        executor.execute(new Runnable() {
+          @Override public void run() {
+            deliver(event, false);
+          }
+        });
+      } catch (RuntimeException e) {
+        // f.e. a shut down executor or a quitting main looper: the event is not delivered to any of the handlers
+        final RuntimeException rethrown = bus.handleSubscriberException(e, event);
+        if (rethrown != null) {
+          throw rethrown;
+        }
+      }
+    }
+  }
+
+  /**
+   * Delivers {@code event} to the valid handlers. An exception thrown by a handler is passed to the
+   * {@link SubscriberExceptionHandler} of {@link #bus} on the delivering thread and doesn't prevent delivery to the
+   * remaining handlers, the first exception rethrown by the {@link SubscriberExceptionHandler} is thrown afterwards.
+   *
+   * @param cancellable true if {@code event} is delivered on the posting thread, delivery then stops once cancelled by
+   *     {@link Bus#cancelEventDelivery(Object)}.
+   */
+  private void deliver(Object event, boolean cancellable) {
+    RuntimeException thrown = null;
+    for (int i = 0; i < handlers.length; i++) {
+      if (cancellable && i > 0 && bus.isDeliveryCancelled(event)) {
+        break;
+      }
+      final EventHandler handler = handlers[i];
+      if (handler.isValid()) {
+        try {
+          handler.handleEvent(event);
+        } catch (RuntimeException e) {
+          final RuntimeException rethrown = bus.handleSubscriberException(e, event);
+          if (thrown == null) {
+            thrown = rethrown;
+          }
+        }
+      }
+    }
+    if (thrown != null) {
+      throw thrown;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "[ThreadModeHandler " + threadMode + ", " + handlers.length + " handlers]";
+  }
+}
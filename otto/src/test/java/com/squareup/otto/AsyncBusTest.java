@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class AsyncBusTest {
+
+  private final Queue<Runnable> tasks = new LinkedList<Runnable>();
+  private AsyncBus bus;
+
+  @Before public void setUp() {
+    bus = new AsyncBus(new Executor() {
+      @Override public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    });
+  }
+
+  @Test public void postReturnsBeforeDelivery() {
+    StringCatcher catcher = new StringCatcher();
+    bus.register(catcher);
+
+    bus.post("Hello");
+    bus.post("World");
+    assertTrue(catcher.getEvents().isEmpty());
+    assertEquals("One task per idle mailbox.", 1, tasks.size());
+
+    runTasks();
+    assertEquals(Arrays.asList("Hello", "World"), catcher.getEvents());
+  }
+
+  @Test public void unregisteredHandlerReceivesNoPendingEvents() {
+    StringCatcher catcher = new StringCatcher();
+    bus.register(catcher);
+
+    bus.post("Hello");
+    bus.unregister(catcher);
+    runTasks();
+
+    assertTrue(catcher.getEvents().isEmpty());
+  }
+
+  @Test public void reregisteredHandlerReceivesEventsPostedAfterRegistration() {
+    StringCatcher catcher = new StringCatcher();
+    bus.register(catcher);
+
+    bus.post("slow");
+    bus.post("queued");
+    bus.unregister(catcher);
+    bus.register(catcher);
+    bus.post("after-reregister");
+    runTasks();
+
+    assertEquals(Arrays.asList("after-reregister"), catcher.getEvents());
+  }
+
+  @Test public void handlerExceptionDoesNotStrandEvents() {
+    final List<String> events = new ArrayList<String>();
+    bus.register(new Object() {
+      @Subscribe public void onString(String event) {
+        events.add(event);
+        if (events.size() == 1) {
+          throw new IllegalStateException("First event fails.");
+        }
+      }
+    });
+    bus.post("Hello");
+    bus.post("World");
+
+    try {
+      tasks.poll().run();
+    } catch (RuntimeException expected) {
+    }
+    runTasks();
+    assertEquals(Arrays.asList("Hello", "World"), events);
+  }
+
+  @Test public void handlerExceptionIsPassedToExceptionHandler() {
+    final List<Object> handled = new ArrayList<Object>();
+    bus.setSubscriberExceptionHandler(new SubscriberExceptionHandler() {
+      @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+        handled.add(exception.getCause());
+        handled.add(bus);
+        handled.add(event);
+      }
+    });
+    final IllegalStateException failure = new IllegalStateException("First event fails.");
+    final List<String> events = new ArrayList<String>();
+    bus.register(new Object() {
+      @Subscribe public void onString(String event) {
+        events.add(event);
+        if (events.size() == 1) {
+          throw failure;
+        }
+      }
+    });
+    bus.post("Hello");
+    bus.post("World");
+
+    assertEquals("Exception is handled on the executor.", 1, tasks.size());
+    tasks.poll().run();
+    assertEquals(Arrays.<Object>asList(failure, bus, "Hello"), handled);
+    assertEquals("Handled exception doesn't interrupt the task.", Arrays.asList("Hello", "World"), events);
+  }
+
+  @Test public void eventsAreDeliveredInOrderPerHandler() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    AsyncBus bus = new AsyncBus(executor);
+    final int count = 1000;
+    final CountDownLatch delivered = new CountDownLatch(2 * count);
+    final List<Integer> slowEvents = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<Integer> fastEvents = Collections.synchronizedList(new ArrayList<Integer>());
+    bus.register(new Object() {
+      @Subscribe public void onInteger(Integer event) throws InterruptedException {
+        if (event % 100 == 0) {
+          Thread.sleep(1);
+        }
+        slowEvents.add(event);
+        delivered.countDown();
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe public void onInteger(Integer event) {
+        fastEvents.add(event);
+        delivered.countDown();
+      }
+    });
+
+    for (int i = 0; i < count; i++) {
+      bus.post(i);
+    }
+    assertTrue(delivered.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < count; i++) {
+      expected.add(i);
+    }
+    assertEquals(expected, slowEvents);
+    assertEquals(expected, fastEvents);
+  }
+
+  @Test public void conflatedEventReplacesEventWaitingInMailbox() {
+    bus.setConflating(String.class, true);
+    final List<Object> events = new ArrayList<Object>();
+    bus.register(new Object() {
+      @Subscribe public void onObject(Object event) {
+        events.add(event);
+      }
+    });
+
+    bus.post("Hello");
+    bus.post(1);
+    bus.post(2);
+    bus.post("World");
+    runTasks();
+
+    assertEquals("Conflated event takes the position of the replaced one, as on Bus.",
+        Arrays.<Object>asList("World", 1, 2), events);
+  }
+
+  @Test public void threadModeHandlerKeepsItsMailboxWhenHandlersChange() {
+    final Queue<Runnable> mainTasks = new LinkedList<Runnable>();
+    final AsyncBus bus = newThreadModeBus(mainTasks);
+    final List<String> events = new ArrayList<String>();
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.MAIN) public void onString(String event) {
+        events.add(event);
+      }
+    });
+
+    bus.post("Hello");
+    // invalidates the dispatch table of String
+    bus.register(new Object() {
+      @Subscribe public void onString(String event) {
+      }
+    });
+    bus.post("World");
+
+    assertEquals("Handler has a single mailbox.", 1, mainTasks.size());
+    runTasks(mainTasks);
+    assertEquals(Arrays.asList("Hello", "World"), events);
+  }
+
+  @Test public void handlersOfThreadModeHaveOwnMailboxes() {
+    final Queue<Runnable> mainTasks = new LinkedList<Runnable>();
+    final AsyncBus bus = newThreadModeBus(mainTasks);
+    final List<String> events = new ArrayList<String>();
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.MAIN, priority = 1) public void slow(String event) {
+        events.add("slow " + event);
+      }
+
+      @Subscribe(thread = ThreadMode.MAIN) public void fast(String event) {
+        events.add("fast " + event);
+      }
+    });
+
+    bus.post("Hello");
+
+    assertTrue("Handlers are delivered to on the main executor only.", tasks.isEmpty());
+    assertEquals("One mailbox per handler.", 2, mainTasks.size());
+    mainTasks.poll();
+    runTasks(mainTasks);
+    assertEquals("Slow handler doesn't block the other one.", Arrays.asList("fast Hello"), events);
+  }
+
+  private AsyncBus newThreadModeBus(final Queue<Runnable> mainTasks) {
+    final Executor main = new Executor() {
+      @Override public void execute(Runnable command) {
+        mainTasks.add(command);
+      }
+    };
+    return new AsyncBus(ThreadEnforcer.ANY, "test", HandlerFinder.ANNOTATED, new DeliveryExecutors(main, null, null),
+        new Executor() {
+          @Override public void execute(Runnable command) {
+            tasks.add(command);
+          }
+        });
+  }
+
+  private static void runTasks(Queue<Runnable> tasks) {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private void runTasks() {
+    runTasks(tasks);
+  }
+}
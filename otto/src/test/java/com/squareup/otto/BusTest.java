@@ -27,6 +27,7 @@ import java.util.Set;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
@@ -121,6 +122,50 @@ public class BusTest {
         COMP_EVENT, objectEvents.get(2));
   }
 
+  @Test public void supertypeHandlerRegisteredAfterPostReceivesEvents() {
+    StringCatcher stringCatcher = new StringCatcher();
+    bus.register(stringCatcher);
+    bus.post(EVENT);
+
+    final List<Object> objectEvents = new ArrayList<Object>();
+    Object objCatcher = new Object() {
+      @Subscribe public void eat(Object food) {
+        objectEvents.add(food);
+      }
+    };
+    bus.register(objCatcher);
+    bus.post(EVENT);
+
+    assertEquals(Arrays.asList(EVENT, EVENT), stringCatcher.getEvents());
+    assertEquals(Arrays.<Object>asList(EVENT), objectEvents);
+
+    bus.unregister(objCatcher);
+    bus.post(EVENT);
+    assertEquals(Arrays.<Object>asList(EVENT), objectEvents);
+  }
+
+  @Test public void handlersOfOnlyTypeWithHandlersAreDispatchedWithoutCopying() {
+    bus.register(new StringCatcher());
+    bus.register(new StringCatcher());
+
+    assertSame(bus.getHandlersForEventType(String.class).snapshot(), bus.getDispatchTable(String.class));
+  }
+
+  @Test public void handlerOfFinalTypeRegisteredAfterPostReceivesEvents() {
+    StringCatcher first = new StringCatcher();
+    bus.register(first);
+    bus.post(EVENT);
+
+    StringCatcher second = new StringCatcher();
+    bus.register(second);
+    bus.post(EVENT);
+    bus.unregister(first);
+    bus.post(EVENT);
+
+    assertEquals(Arrays.asList(EVENT, EVENT), first.getEvents());
+    assertEquals(Arrays.asList(EVENT, EVENT), second.getEvents());
+  }
+
   @Test public void deadEventForwarding() {
     GhostCatcher catcher = new GhostCatcher();
     bus.register(catcher);
@@ -134,6 +179,49 @@ public class BusTest {
         EVENT, events.get(0).event);
   }
 
+  @Test public void batchDeadEventForwarding() {
+    GhostCatcher catcher = new GhostCatcher();
+    bus.register(catcher);
+    StringCatcher stringCatcher = new StringCatcher();
+    bus.register(stringCatcher);
+
+    bus.postAll(Arrays.<Object>asList(EVENT, 1, EVENT));
+
+    assertEquals(Arrays.asList(EVENT, EVENT), stringCatcher.getEvents());
+    List<DeadEvent> events = catcher.getEvents();
+    assertEquals("One dead event should be delivered.", 1, events.size());
+    assertEquals("The dead event should wrap the original event.", 1, events.get(0).event);
+  }
+
+  @Test public void undeliveredEventsAreCountedWithoutDeadEventHandlers() {
+    bus.post(EVENT);
+    bus.postAll(1, 2);
+
+    assertEquals(3, bus.getUndeliveredEventCount());
+  }
+
+  @Test public void forwardedDeadEventsAreCounted() {
+    GhostCatcher catcher = new GhostCatcher();
+    bus.register(catcher);
+
+    bus.post(EVENT);
+    bus.post(new DeadEvent(this, EVENT));
+
+    assertEquals(2, catcher.getEvents().size());
+    assertEquals("Explicit DeadEvents are not counted.", 1, bus.getUndeliveredEventCount());
+  }
+
+  @Test public void batchWithNullEventPostsNothing() {
+    StringCatcher catcher = new StringCatcher();
+    bus.register(catcher);
+    try {
+      bus.postAll(EVENT, null);
+      fail("Should have thrown an NPE on postAll.");
+    } catch (NullPointerException expected) {
+    }
+    assertTrue(catcher.getEvents().isEmpty());
+  }
+
   @Test public void deadEventPosting() {
     GhostCatcher catcher = new GhostCatcher();
     bus.register(catcher);
@@ -256,10 +344,21 @@ public class BusTest {
 
   @Test public void flattenHierarchy() {
     HierarchyFixture fixture = new HierarchyFixture();
-    Set<Class<?>> hierarchy = bus.flattenHierarchy(fixture.getClass());
+    List<Class<?>> hierarchy = Arrays.asList(bus.flattenHierarchy(fixture.getClass()));
+
+    assertEquals(Arrays.<Class<?>>asList(HierarchyFixture.class, HierarchyFixtureParent.class, Object.class),
+        hierarchy);
+  }
+
+  @Test public void flattenHierarchyWithInterfaces() {
+    bus.setInterfaceDispatch(true);
+    HierarchyFixture fixture = new HierarchyFixture();
+    List<Class<?>> hierarchy = Arrays.asList(bus.flattenHierarchy(fixture.getClass()));
 
-    assertEquals(3, hierarchy.size());
+    assertEquals(5, hierarchy.size());
     assertContains(Object.class, hierarchy);
+    assertContains(HierarchyFixtureInterface.class, hierarchy);
+    assertContains(HierarchyFixtureSubinterface.class, hierarchy);
     assertContains(HierarchyFixtureParent.class, hierarchy);
     assertContains(HierarchyFixture.class, hierarchy);
   }
@@ -436,4 +535,17 @@ public class BusTest {
     bus.post(EVENT);
   }
 
+  @SuppressWarnings("deprecation")
+  @Test public void deprecatedQueueMethodsStillDeliver() {
+    StringCatcher catcher = new StringCatcher();
+    bus.register(catcher);
+    EventHandler handler = bus.getHandlersForEventType(String.class).iterator().next();
+
+    bus.enqueueEvent(EVENT, handler);
+    assertTrue(catcher.getEvents().isEmpty());
+    bus.dispatchQueuedEvents();
+
+    assertEquals(Arrays.asList(EVENT), catcher.getEvents());
+  }
+
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static junit.framework.Assert.assertEquals;
+
+public class CompositeHandlerFinderTest {
+
+  private Bus bus;
+
+  @Before public void setUp() {
+    HandlerFinder_com_squareup_otto_StringCatcher.calls = 0;
+    bus = new Bus(ThreadEnforcer.ANY, "test", new CompositeHandlerFinder());
+  }
+
+  @Test public void generatedFinderIsUsed() {
+    StringCatcher catcher = new StringCatcher();
+    bus.register(catcher);
+    bus.post("hello");
+
+    assertThat(catcher.getEvents()).containsExactly("hello");
+    assertEquals(2, HandlerFinder_com_squareup_otto_StringCatcher.calls);
+  }
+
+  @Test public void classWithoutGeneratedFinderFallsBack() {
+    final List<String> events = new ArrayList<String>();
+    bus.register(new Object() {
+      @Subscribe public void onString(String s) {
+        events.add(s);
+      }
+    });
+    bus.post("hello");
+
+    assertThat(events).containsExactly("hello");
+    assertEquals(0, HandlerFinder_com_squareup_otto_StringCatcher.calls);
+  }
+
+  @Test public void finderNamesAreUnique() {
+    assertEquals("com.squareup.otto.HandlerFinder_a_b__c", CompositeHandlerFinder.getFinderClassName("a.b_c"));
+    assertEquals("com.squareup.otto.HandlerFinder_a__b_c", CompositeHandlerFinder.getFinderClassName("a_b.c"));
+    assertEquals("com.squareup.otto.HandlerFinder_a_B$C", CompositeHandlerFinder.getFinderClassName("a.B$C"));
+  }
+}
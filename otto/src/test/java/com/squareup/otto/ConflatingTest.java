@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Bus#setConflating(Class, boolean)}. */
+public class ConflatingTest {
+
+  private final Bus bus = new Bus(ThreadEnforcer.ANY);
+  private final List<Object> received = new ArrayList<Object>();
+
+  @Test public void queuedEventIsReplacedByLatestEventOfSameClass() {
+    bus.setConflating(Integer.class, true);
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        received.add(event);
+        if (event.equals("first")) {
+          bus.post(1);
+          bus.post("queued");
+          bus.post(2);
+          bus.post(3);
+        }
+      }
+
+      @Subscribe public void handle(Integer event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("first");
+
+    assertThat(received).containsExactly("first", 3, "queued");
+  }
+
+  @Test public void eventsOfOtherClassesAreNotConflated() {
+    bus.setConflating(Integer.class, true);
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        received.add(event);
+        if (event.equals("first")) {
+          bus.post("second");
+          bus.post("third");
+        }
+      }
+    });
+
+    bus.post("first");
+
+    assertThat(received).containsExactly("first", "second", "third");
+  }
+
+  @Test public void conflationCanBeTurnedOff() {
+    bus.setConflating(Integer.class, true);
+    bus.setConflating(Integer.class, false);
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        bus.post(1);
+        bus.post(2);
+      }
+
+      @Subscribe public void handle(Integer event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("first");
+
+    assertThat(received).containsExactly(1, 2);
+  }
+
+  @Test public void eventsBeingDeliveredAreNotReplaced() {
+    bus.setConflating(Integer.class, true);
+    bus.register(new Object() {
+      @Subscribe public void handle(Integer event) {
+        received.add(event);
+        if (event < 3) {
+          bus.post(event + 1);
+        }
+      }
+    });
+
+    bus.post(1);
+
+    assertThat(received).containsExactly(1, 2, 3);
+  }
+}
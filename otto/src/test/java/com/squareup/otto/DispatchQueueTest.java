@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class DispatchQueueTest {
+
+  private final DispatchQueue queue = new DispatchQueue();
+  private final EventHandler[] handlers = {
+    new BaseEventHandler() {
+      @Override public void handleEvent(Object event) {
+      }
+    }
+  };
+
+  @Test public void pairsAreRemovedInOrderOfOffering() {
+    for (int i = 0; i < 5; i++) {
+      queue.offer(i, handlers);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i, queue.headEvent());
+      assertSame(handlers, queue.headHandlers());
+      queue.removeHead();
+    }
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test public void growingKeepsOrderWhenWrappedAround() {
+    int next = 0;
+    int expected = 0;
+    // move the head into the middle of the buffer so that the queued pairs wrap around its end
+    for (int i = 0; i < 10; i++) {
+      queue.offer(next++, handlers);
+    }
+    for (int i = 0; i < 10; i++) {
+      queue.removeHead();
+      expected++;
+    }
+    for (int i = 0; i < 100; i++) {
+      queue.offer(next++, handlers);
+    }
+    assertEquals(100, queue.size());
+    while (!queue.isEmpty()) {
+      assertEquals(expected++, queue.headEvent());
+      queue.removeHead();
+    }
+    assertEquals(next, expected);
+  }
+
+  @Test public void replaceKeepsPositionOfLatestEventOfSameClass() {
+    queue.offer(1, handlers);
+    queue.offer("first", handlers);
+    queue.offer(2, handlers);
+    EventHandler[] newHandlers = handlers.clone();
+
+    assertTrue(queue.replace(3, newHandlers));
+    assertFalse(queue.replace(4L, handlers));
+
+    assertEquals(3, queue.size());
+    assertEquals(1, queue.headEvent());
+    queue.removeHead();
+    assertEquals("first", queue.headEvent());
+    queue.removeHead();
+    assertEquals(3, queue.headEvent());
+    assertSame(newHandlers, queue.headHandlers());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squareup.otto;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+public class DispatchTableCacheTest {
+
+  private static final int MAX_GC_ATTEMPTS = 50;
+  private static final EventHandler[] TABLE = new EventHandler[0];
+
+  private final DispatchTableCache cache = new DispatchTableCache();
+
+  @Test public void tablesOfAssignableClassesAreRemoved() {
+    cache.put(Integer.class, TABLE);
+    cache.put(Number.class, TABLE);
+    cache.put(String.class, TABLE);
+
+    cache.removeAssignableTo(Number.class);
+
+    assertNull(cache.get(Integer.class));
+    assertNull(cache.get(Number.class));
+    assertSame(TABLE, cache.get(String.class));
+  }
+
+  @Test public void replacedTableIsNotRemoved() {
+    EventHandler[] replaced = new EventHandler[0];
+    cache.put(String.class, replaced);
+    cache.put(String.class, TABLE);
+
+    cache.remove(String.class, replaced);
+
+    assertSame(TABLE, cache.get(String.class));
+  }
+
+  @Test public void tableOfClassOfOtherLoaderIsCached() throws Exception {
+    Class<?> eventClass = new URLClassLoader(new URL[] {testClasses()}, null).loadClass(StringCatcher.class.getName());
+    cache.put(eventClass, TABLE);
+
+    assertSame(TABLE, cache.get(eventClass));
+    cache.removeAssignableTo(Object.class);
+    assertNull(cache.get(eventClass));
+  }
+
+  @Test public void postedClassCanBeUnloaded() throws Exception {
+    Bus bus = new Bus(ThreadEnforcer.ANY);
+    WeakReference<ClassLoader> unhandled = postEventOfOtherLoader(bus);
+    bus.register(new Object() {
+      @Subscribe public void onObject(Object event) {
+      }
+    });
+    WeakReference<ClassLoader> handled = postEventOfOtherLoader(bus);
+
+    for (int i = 0; i < MAX_GC_ATTEMPTS && (unhandled.get() != null || handled.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull("Class loader of an event without handlers should have been collected.", unhandled.get());
+    assertNull("Class loader of a handled event should have been collected.", handled.get());
+  }
+
+  /** Posts an event of a class loaded by a new class loader, without keeping the loader reachable. */
+  private static WeakReference<ClassLoader> postEventOfOtherLoader(Bus bus) throws Exception {
+    ClassLoader loader = new URLClassLoader(new URL[] {testClasses()}, null);
+    Class<?> eventClass = loader.loadClass(StringCatcher.class.getName());
+    assertEquals(loader, eventClass.getClassLoader());
+
+    bus.post(eventClass.newInstance());
+    return new WeakReference<ClassLoader>(loader);
+  }
+
+  private static URL testClasses() {
+    return StringCatcher.class.getProtectionDomain().getCodeSource().getLocation();
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.reflect.Method;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class EventHandlerSetTest {
+
+  private final EventHandlerSet set = new EventHandlerSet();
+
+  @Test public void snapshotKeepsRegistrationOrder() throws Exception {
+    EventHandler first = handlerFor(new StringCatcher());
+    EventHandler second = handlerFor(new StringCatcher());
+    EventHandler third = handlerFor(new StringCatcher());
+    set.add(first);
+    set.add(second);
+    set.add(third);
+    set.remove(second);
+
+    EventHandler[] snapshot = set.snapshot();
+    assertEquals(2, snapshot.length);
+    assertSame(first, snapshot[0]);
+    assertSame(third, snapshot[1]);
+  }
+
+  @Test public void snapshotIsNotAffectedByLaterModifications() throws Exception {
+    EventHandler handler = handlerFor(new StringCatcher());
+    set.add(handler);
+    EventHandler[] snapshot = set.snapshot();
+
+    set.remove(handler);
+
+    assertEquals(1, snapshot.length);
+    assertEquals(0, set.snapshot().length);
+  }
+
+  @Test public void equalHandlersAreAddedOnce() throws Exception {
+    StringCatcher catcher = new StringCatcher();
+    assertTrue(set.add(handlerFor(catcher)));
+    assertFalse(set.add(handlerFor(catcher)));
+    assertEquals(1, set.size());
+  }
+
+  @Test public void extractReturnsRegisteredInstance() throws Exception {
+    StringCatcher catcher = new StringCatcher();
+    EventHandler registered = handlerFor(catcher);
+    set.add(registered);
+
+    assertSame(registered, set.extract(handlerFor(catcher)));
+    assertNull(set.extract(handlerFor(catcher)));
+    assertTrue(set.isEmpty());
+  }
+
+  private static EventHandler handlerFor(StringCatcher catcher) throws NoSuchMethodException {
+    Method method = StringCatcher.class.getMethod("hereHaveAString", String.class);
+    return new ReflectiveEventHandler(catcher, method);
+  }
+}
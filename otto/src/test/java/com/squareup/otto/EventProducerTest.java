@@ -22,6 +22,8 @@ import org.junit.Test;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
@@ -123,6 +125,23 @@ public class EventProducerTest {
     return getClass().getMethod("errorThrowingMethod");
   }
 
+  @Test public void generatedProducersOfEqualListenersAreNotEqual() {
+    EqualListener listener = new EqualListener();
+
+    assertEquals(newGeneratedProducer(listener), newGeneratedProducer(listener));
+    assertFalse("Listeners must be compared by identity.",
+        newGeneratedProducer(listener).equals(newGeneratedProducer(new EqualListener())));
+  }
+
+  /** @return producer of {@code listener} as generated by the annotation processor, of the same class on each call */
+  private static EventProducer newGeneratedProducer(final EqualListener listener) {
+    return new GeneratedEventProducer(listener) {
+      @Override protected Object produce() {
+        return listener.produce();
+      }
+    };
+  }
+
   /**
    * Records the invocation in {@link #methodCalled} and returns the value in
    * {@link #FIXTURE_RETURN_VALUE}.
@@ -148,6 +167,21 @@ public class EventProducerTest {
     throw new JudgmentError();
   }
 
+  /** Listener equal to every other instance of its class. */
+  static class EqualListener {
+    public Object produce() {
+      return FIXTURE_RETURN_VALUE;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o instanceof EqualListener;
+    }
+
+    @Override public int hashCode() {
+      return 0;
+    }
+  }
+
   /** Local Error subclass to check variety of error thrown. */
   static class JudgmentError extends Error {
     private static final long serialVersionUID = 634248373797713373L;
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+public class GeneratedDispatcherTest {
+
+  @Test public void dispatchersOfEqualListenersAreNotEqual() {
+    EqualListener listener = new EqualListener();
+
+    assertEquals(new Dispatcher(listener, 0), new Dispatcher(listener, 0));
+    assertFalse("Methods must be compared.", new Dispatcher(listener, 0).equals(new Dispatcher(listener, 1)));
+    assertFalse("Listeners must be compared by identity.",
+        new Dispatcher(listener, 0).equals(new Dispatcher(new EqualListener(), 0)));
+  }
+
+  /** Dispatcher as generated by the annotation processor for {@link EqualListener}. */
+  private static final class Dispatcher extends GeneratedDispatcher {
+    Dispatcher(Object listener, int method) {
+      super(listener, method, 0, ThreadMode.POSTING);
+    }
+
+    @Override protected void handleEvent(Object listener, Object event) {
+      switch (method) {
+        case 0:
+          ((EqualListener) listener).onString((String) event);
+          break;
+        default:
+          ((EqualListener) listener).onInteger((Integer) event);
+          break;
+      }
+    }
+  }
+
+  /** Listener equal to every other instance of its class. */
+  static class EqualListener {
+    public void onString(String event) {
+    }
+
+    public void onInteger(Integer event) {
+    }
+
+    @Override public boolean equals(Object o) {
+      return o instanceof EqualListener;
+    }
+
+    @Override public int hashCode() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stands in for the finder the annotation processor generates for {@link StringCatcher} with '-Aotto.finder=class'.
+ * Counts its calls, so tests can tell it was used.
+ */
+public final class HandlerFinder_com_squareup_otto_StringCatcher implements HandlerFinder {
+  static int calls;
+
+  @Override public Map<Class<?>, EventProducer> findAllProducers(Object listener) {
+    calls++;
+    return HandlerFinder.ANNOTATED.findAllProducers(listener);
+  }
+
+  @Override public Map<Class<?>, Set<EventHandler>> findAllSubscribers(Object listener) {
+    calls++;
+    return HandlerFinder.ANNOTATED.findAllSubscribers(listener);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+public class HierarchyCacheTest {
+
+  private static final int MAX_GC_ATTEMPTS = 50;
+
+  @Test public void hierarchyIsOrderedMostSpecificFirst() {
+    assertEquals(Arrays.<Class<?>>asList(Event.class, BaseEvent.class, SpecialEvent.class, Marker.class,
+        Object.class), Arrays.asList(HierarchyCache.CLASSES_AND_INTERFACES.get(Event.class)));
+    assertEquals(Arrays.<Class<?>>asList(Event.class, BaseEvent.class, Object.class),
+        Arrays.asList(HierarchyCache.CLASSES.get(Event.class)));
+    assertEquals(Arrays.<Class<?>>asList(Object.class), Arrays.asList(HierarchyCache.CLASSES.get(Object.class)));
+  }
+
+  @Test public void hierarchyIsComputedOnce() {
+    Class<?>[] hierarchy = HierarchyCache.CLASSES.get(String.class);
+
+    assertSame(hierarchy, HierarchyCache.CLASSES.get(String.class));
+  }
+
+  @Test public void cachedClassCanBeUnloaded() throws Exception {
+    WeakReference<ClassLoader> loader = cacheClassOfOtherLoader();
+
+    for (int i = 0; i < MAX_GC_ATTEMPTS && loader.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull("Class loader should have been collected.", loader.get());
+  }
+
+  /** Caches the hierarchy of a class loaded by a new class loader, without keeping the loader reachable. */
+  private static WeakReference<ClassLoader> cacheClassOfOtherLoader() throws ClassNotFoundException {
+    URL classes = StringCatcher.class.getProtectionDomain().getCodeSource().getLocation();
+    ClassLoader loader = new URLClassLoader(new URL[] {classes}, null);
+    Class<?> eventClass = loader.loadClass(StringCatcher.class.getName());
+    assertEquals(loader, eventClass.getClassLoader());
+
+    HierarchyCache.CLASSES_AND_INTERFACES.get(eventClass);
+    return new WeakReference<ClassLoader>(loader);
+  }
+
+  interface Marker {
+  }
+
+  interface SpecialEvent extends Marker {
+  }
+
+  static class BaseEvent implements Marker {
+  }
+
+  static class Event extends BaseEvent implements SpecialEvent {
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class IndexedHandlerFinderTest {
+
+  private static final String LISTENER = IndexedHandlerFinderTest.class.getName() + "$Listener";
+  private static final String BASE_LISTENER = IndexedHandlerFinderTest.class.getName() + "$BaseListener";
+
+  private final List<File> indexes = new ArrayList<File>();
+
+  @Before public void setUp() {
+    Listener.events.clear();
+  }
+
+  @After public void tearDown() {
+    for (File index : indexes) {
+      index.delete();
+    }
+  }
+
+  @Test public void indexedMethodsReceiveEvents() throws Exception {
+    Bus bus = newBus(LISTENER + "=onString(java.lang.String),onIntegers([Ljava.lang.Integer;),produceLong()");
+    Listener listener = new Listener();
+    bus.register(listener);
+    bus.post("hello");
+    bus.post(new Integer[0]);
+    assertThat(Listener.events).containsExactly("string", "integers");
+  }
+
+  @Test public void methodsMissingFromIndexAreIgnored() throws Exception {
+    Bus bus = newBus(LISTENER + "=onString(java.lang.String)");
+    bus.register(new Listener());
+    bus.post(new Integer[0]);
+    assertThat(Listener.events).isEmpty();
+  }
+
+  @Test public void entriesOfSuperclassesAreRead() throws Exception {
+    Bus bus = newBus(LISTENER + "=onString(java.lang.String)", BASE_LISTENER + "=onBase(java.lang.String)");
+    bus.register(new Listener());
+    bus.post("hello");
+    assertThat(Listener.events).containsOnly("string", "base");
+  }
+
+  @Test public void indexedProducerIsCalled() throws Exception {
+    Bus bus = newBus(LISTENER + "=produceLong()");
+    final List<Long> produced = new ArrayList<Long>();
+    bus.register(new Object() {
+      @Subscribe public void onLong(Long l) {
+        produced.add(l);
+      }
+    });
+    bus.register(new Listener());
+    assertThat(produced).containsExactly(42L);
+  }
+
+  @Test public void outOfDateIndexFails() throws Exception {
+    Bus bus = newBus(LISTENER + "=onRemoved(java.lang.String)");
+    try {
+      bus.register(new Listener());
+      fail("Out of date index should not be accepted.");
+    } catch (IllegalStateException expected) {
+      // Do nothing.
+    }
+  }
+
+  @Test public void indexIsReadFromClassLoaderOfListener() throws Exception {
+    File directory = File.createTempFile("otto-index", null);
+    directory.delete();
+    File index = new File(directory, IndexedHandlerFinder.getIndexResource(LISTENER));
+    index.getParentFile().mkdirs();
+    indexes.add(index);
+    indexes.add(index.getParentFile());
+    indexes.add(index.getParentFile().getParentFile());
+    indexes.add(directory);
+    Writer writer = new FileWriter(index);
+    try {
+      writer.write("onString(java.lang.String)\n");
+    } finally {
+      writer.close();
+    }
+    URL testClasses = Listener.class.getProtectionDomain().getCodeSource().getLocation();
+    ClassLoader pluginLoader = new URLClassLoader(new URL[] {directory.toURI().toURL(), testClasses}, null);
+    Object listener = pluginLoader.loadClass(LISTENER).newInstance();
+
+    Map<Class<?>, Set<EventHandler>> subscribers = new IndexedHandlerFinder().findAllSubscribers(listener);
+
+    assertThat(subscribers.keySet()).containsOnly(String.class);
+    assertThat(subscribers.get(String.class)).hasSize(1);
+  }
+
+  /** @param entries index entries as {@code listenerClass=descriptor,descriptor...} */
+  private Bus newBus(final String... entries) throws IOException {
+    final Map<String, URL> urls = new HashMap<String, URL>();
+    for (String entry : entries) {
+      String[] classAndDescriptors = entry.split("=");
+      File index = File.createTempFile("otto-index", null);
+      indexes.add(index);
+      Writer writer = new FileWriter(index);
+      try {
+        writer.write("# Index of " + classAndDescriptors[0] + "\n");
+        for (String descriptor : classAndDescriptors[1].split(",")) {
+          writer.write(descriptor + "\n");
+        }
+      } finally {
+        writer.close();
+      }
+      urls.put(IndexedHandlerFinder.getIndexResource(classAndDescriptors[0]), index.toURI().toURL());
+    }
+    ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+      @Override public URL getResource(String name) {
+        URL url = urls.get(name);
+        return url != null ? url : super.getResource(name);
+      }
+    };
+    return new Bus(ThreadEnforcer.ANY, "test", new IndexedHandlerFinder(classLoader));
+  }
+
+  public static class BaseListener {
+    public void onBase(String s) {
+      Listener.events.add("base");
+    }
+  }
+
+  public static class Listener extends BaseListener {
+    static final List<String> events = new ArrayList<String>();
+
+    public void onString(String s) {
+      events.add("string");
+    }
+
+    public void onIntegers(Integer[] integers) {
+      events.add("integers");
+    }
+
+    public Long produceLong() {
+      return 42L;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Bus#setInterfaceDispatch(boolean)}. */
+public class InterfaceDispatchTest {
+
+  private final Bus bus = new Bus(ThreadEnforcer.ANY);
+  private final List<Object> received = new ArrayList<Object>();
+
+  @Test public void subscribingToInterfaceFailsUnlessEnabled() {
+    try {
+      bus.register(new MarkerListener());
+      fail("Subscription to an interface should be rejected.");
+    } catch (IllegalArgumentException expected) {
+      // Do nothing.
+    }
+
+    bus.setInterfaceDispatch(true);
+    bus.register(new MarkerListener());
+  }
+
+  @Test public void eventIsDeliveredToHandlersOfItsInterfaces() {
+    bus.setInterfaceDispatch(true);
+    bus.register(new MarkerListener());
+    bus.register(new Object() {
+      @Subscribe public void handle(SubMarker event) {
+        received.add("sub");
+      }
+    });
+
+    Event event = new Event();
+    bus.post(event);
+    bus.post(new SubEvent());
+    bus.post("unmarked");
+
+    assertThat(received).hasSize(3).contains(event, "sub");
+  }
+
+  @Test public void eventIsDeliveredOnceToHandlerOfInterfaceImplementedTwice() {
+    bus.setInterfaceDispatch(true);
+    bus.register(new MarkerListener());
+
+    bus.post(new SubEvent());
+
+    assertThat(received).hasSize(1);
+  }
+
+  @Test public void stickyEventIsDeliveredToHandlersOfItsInterfaces() {
+    bus.setInterfaceDispatch(true);
+    Event event = new Event();
+    bus.postSticky(event);
+
+    bus.register(new MarkerListener());
+
+    assertThat(received).containsExactly(event);
+  }
+
+  @Test public void handlersOfInterfacesReceiveNothingOnceDisabled() {
+    bus.setInterfaceDispatch(true);
+    bus.register(new MarkerListener());
+    bus.post(new Event());
+
+    bus.setInterfaceDispatch(false);
+    bus.post(new Event());
+
+    assertThat(received).hasSize(1);
+  }
+
+  interface Marker {
+  }
+
+  interface SubMarker extends Marker {
+  }
+
+  static class Event implements Marker {
+  }
+
+  static class SubEvent extends Event implements SubMarker {
+  }
+
+  public class MarkerListener {
+    @Subscribe public void handle(Marker event) {
+      received.add(event);
+    }
+  }
+}
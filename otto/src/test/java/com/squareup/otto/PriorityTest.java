@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Subscribe#priority()} and {@link Bus#cancelEventDelivery(Object)}. */
+public class PriorityTest {
+
+  private final Bus bus = new Bus(ThreadEnforcer.ANY);
+  private final List<String> received = new ArrayList<String>();
+
+  @Test public void higherPriorityHandlersReceiveEventFirst() {
+    bus.register(new Object() {
+      @Subscribe(priority = -1) public void low(String event) {
+        received.add("low");
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe public void normal(String event) {
+        received.add("normal");
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe(priority = 10) public void high(String event) {
+        received.add("high");
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("high", "normal", "low");
+  }
+
+  @Test public void handlersWithSamePriorityReceiveEventInRegistrationOrder() {
+    for (int i = 0; i < 3; i++) {
+      final String name = "handler" + i;
+      bus.register(new Object() {
+        @Subscribe(priority = 1) public void handle(String event) {
+          received.add(name);
+        }
+      });
+    }
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("handler0", "handler1", "handler2");
+  }
+
+  @Test public void priorityIsRespectedAcrossEventTypes() {
+    bus.register(new Object() {
+      @Subscribe public void handleString(String event) {
+        received.add("string");
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe(priority = 1) public void handleObject(Object event) {
+        received.add("object");
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("object", "string");
+  }
+
+  @Test public void cancelledEventIsNotDeliveredToRemainingHandlers() {
+    bus.register(new Object() {
+      @Subscribe(priority = 1) public void cancel(String event) {
+        received.add("cancel");
+        bus.cancelEventDelivery(event);
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("event");
+    assertThat(received).containsExactly("cancel");
+
+    // cancellation applies to a single delivery only
+    received.clear();
+    bus.post("another");
+    assertThat(received).containsExactly("cancel");
+  }
+
+  @Test public void cancellationDoesNotAffectQueuedEvents() {
+    bus.register(new Object() {
+      @Subscribe(priority = 1) public void cancel(String event) {
+        received.add("cancel " + event);
+        if ("first".equals(event)) {
+          bus.post("second");
+          bus.cancelEventDelivery(event);
+        }
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("first");
+
+    assertThat(received).containsExactly("cancel first", "cancel second", "second");
+  }
+
+  @Test public void cancellingEventNotBeingDeliveredFails() {
+    try {
+      bus.cancelEventDelivery("event");
+      fail("Cancelling an event outside of its delivery should fail.");
+    } catch (IllegalStateException expected) {
+      // Do nothing.
+    }
+  }
+
+  @Test public void cancellingAnotherEventFails() {
+    final List<RuntimeException> failures = new ArrayList<RuntimeException>();
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        try {
+          bus.cancelEventDelivery("another event");
+        } catch (IllegalStateException e) {
+          failures.add(e);
+        }
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(failures).hasSize(1);
+  }
+}
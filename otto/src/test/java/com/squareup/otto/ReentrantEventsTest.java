@@ -83,6 +83,35 @@ public class ReentrantEventsTest {
         Arrays.<Object>asList(FIRST, SECOND), recorder.eventsReceived);
   }
 
+  @Test public void batchOrderingMatchesSequentialPosts() {
+    EventProcessor processor = new EventProcessor();
+    bus.register(processor);
+
+    EventRecorder recorder = new EventRecorder();
+    bus.register(recorder);
+
+    bus.postAll(FIRST, FIRST);
+
+    assertEquals("EventRecorder expected reentrant events before the rest of the batch",
+        Arrays.<Object>asList(FIRST, SECOND, FIRST, SECOND), recorder.eventsReceived);
+  }
+
+  @Test public void batchPostedFromHandlerIsQueued() {
+    bus.register(new Object() {
+      @Subscribe public void listenForStrings(String event) {
+        bus.postAll(SECOND, SECOND);
+      }
+    });
+
+    EventRecorder recorder = new EventRecorder();
+    bus.register(recorder);
+
+    bus.post(FIRST);
+
+    assertEquals("EventRecorder expected the batch after the event being dispatched",
+        Arrays.<Object>asList(FIRST, SECOND, SECOND), recorder.eventsReceived);
+  }
+
   public class EventProcessor {
     @Subscribe public void listenForStrings(String event) {
       bus.post(SECOND);
@@ -22,6 +22,7 @@ import org.junit.Test;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
@@ -101,6 +102,56 @@ public class ReflectiveEventHandlerTest {
     }
   }
 
+  @Test public void runtimeExceptionWrapping() throws NoSuchMethodException {
+    Method method = getClass().getMethod("runtimeExceptionThrowingMethod", Object.class);
+    EventHandler handler = new ReflectiveEventHandler(this, method);
+
+    try {
+      handler.handleEvent(new Object());
+      fail("Handlers whose methods throw must throw RuntimeException");
+    } catch (RuntimeException e) {
+      assertTrue("Expected exception must be wrapped.", e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test public void methodOfNonPublicClassIsCalled() throws NoSuchMethodException {
+    HiddenHandler target = new HiddenHandler();
+    EventHandler handler = new ReflectiveEventHandler(target, HiddenHandler.class.getMethod("handle", Object.class));
+
+    handler.handleEvent(FIXTURE_ARGUMENT);
+
+    assertSame(FIXTURE_ARGUMENT, target.argument);
+  }
+
+  @Test public void methodOfPublicClassIsCalledWithoutReflection() throws NoSuchMethodException {
+    EventHandler handler = new ReflectiveEventHandler(this, getClass().getMethod("stackRecordingMethod", Object.class));
+
+    handler.handleEvent(FIXTURE_ARGUMENT);
+
+    // frames from the handler method up to the event handler which called it
+    for (StackTraceElement element : (StackTraceElement[]) methodArgument) {
+      if (element.getClassName().equals(ReflectiveEventHandler.class.getName())) {
+        return;
+      }
+      assertFalse("Method must not be called through reflection: " + element,
+          element.getClassName().equals(Method.class.getName()));
+    }
+    fail("Method must be called by the event handler.");
+  }
+
+  @Test public void invalidatedHandlerRefusesEvents() throws NoSuchMethodException {
+    EventHandler handler = new ReflectiveEventHandler(this, getRecordingMethod());
+    handler.invalidate();
+
+    try {
+      handler.handleEvent(FIXTURE_ARGUMENT);
+      fail("Invalidated handler must refuse events");
+    } catch (IllegalStateException expected) {
+      // Expected.
+    }
+    assertFalse(methodCalled);
+  }
+
   private Method getRecordingMethod() throws NoSuchMethodException {
     return getClass().getMethod("recordingMethod", Object.class);
   }
@@ -127,10 +178,19 @@ public class ReflectiveEventHandlerTest {
     methodArgument = arg;
   }
 
+  /** Records the stack trace of the call in {@link #methodArgument}. */
+  public void stackRecordingMethod(Object arg) {
+    methodArgument = new Throwable().getStackTrace();
+  }
+
   public void exceptionThrowingMethod(Object arg) throws Exception {
     throw new IntentionalException();
   }
 
+  public void runtimeExceptionThrowingMethod(Object arg) {
+    throw new IllegalStateException();
+  }
+
   /** Local exception subclass to check variety of exception thrown. */
   static class IntentionalException extends Exception {
     private static final long serialVersionUID = -2500191180248181379L;
@@ -140,6 +200,15 @@ public class ReflectiveEventHandlerTest {
     throw new JudgmentError();
   }
 
+  /** Handler class which isn't accessible from outside of this test. */
+  private static class HiddenHandler {
+    Object argument;
+
+    public void handle(Object arg) {
+      argument = arg;
+    }
+  }
+
   /** Local Error subclass to check variety of error thrown. */
   static class JudgmentError extends Error {
     private static final long serialVersionUID = 634248373797713373L;
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Bus#postSticky(Object)}. */
+public class StickyEventTest {
+
+  private final Bus bus = new Bus(ThreadEnforcer.ANY);
+  private final List<Object> received = new ArrayList<Object>();
+
+  @Test public void stickyEventIsPostedToRegisteredHandlers() {
+    bus.register(new StringListener());
+
+    bus.postSticky("event");
+
+    assertThat(received).containsExactly("event");
+  }
+
+  @Test public void lastStickyEventIsDeliveredOnRegistration() {
+    bus.postSticky("first");
+    bus.postSticky("second");
+
+    bus.register(new StringListener());
+
+    assertThat(received).containsExactly("second");
+    assertEquals("second", bus.getStickyEvent(String.class));
+  }
+
+  @Test public void stickyEventIsDeliveredToHandlersOfItsSupertypes() {
+    bus.postSticky(1);
+    bus.postSticky("event");
+
+    bus.register(new Object() {
+      @Subscribe public void handle(Object event) {
+        received.add(event);
+      }
+    });
+
+    assertThat(received).containsExactly(1, "event");
+  }
+
+  @Test public void stickyEventIsDeliveredOnEveryRegistration() {
+    bus.postSticky("event");
+    StringListener listener = new StringListener();
+
+    bus.register(listener);
+    bus.unregister(listener);
+    bus.register(listener);
+
+    assertThat(received).containsExactly("event", "event");
+  }
+
+  @Test public void removedStickyEventIsNotDelivered() {
+    bus.postSticky("event");
+    bus.postSticky(1);
+
+    assertEquals("event", bus.removeStickyEvent(String.class));
+    assertTrue(bus.removeStickyEvent(Integer.valueOf(1)));
+    bus.register(new StringListener());
+
+    assertThat(received).isEmpty();
+    assertNull(bus.getStickyEvent(String.class));
+    assertNull(bus.removeStickyEvent(String.class));
+  }
+
+  @Test public void replacedStickyEventIsNotRemoved() {
+    String first = new String("event");
+    bus.postSticky(first);
+    bus.postSticky("second");
+
+    assertFalse(bus.removeStickyEvent(first));
+    assertEquals("second", bus.getStickyEvent(String.class));
+  }
+
+  @Test public void allStickyEventsAreRemoved() {
+    bus.postSticky("event");
+    bus.postSticky(1);
+
+    bus.removeAllStickyEvents();
+
+    assertNull(bus.getStickyEvent(String.class));
+    assertNull(bus.getStickyEvent(Integer.class));
+  }
+
+  @Test public void leastRecentlyPostedStickyEventIsEvicted() {
+    bus.setStickyEventCapacity(2);
+    bus.postSticky("event");
+    bus.postSticky(1);
+    bus.postSticky("replaced");
+    bus.postSticky(2L);
+
+    assertNull(bus.getStickyEvent(Integer.class));
+    assertEquals("replaced", bus.getStickyEvent(String.class));
+    assertEquals(Long.valueOf(2), bus.getStickyEvent(Long.class));
+
+    bus.setStickyEventCapacity(1);
+    assertNull(bus.getStickyEvent(String.class));
+    assertEquals(Long.valueOf(2), bus.getStickyEvent(Long.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacityMustBePositive() {
+    bus.setStickyEventCapacity(0);
+  }
+
+  @Test public void producedEventIsDeliveredBeforeStickyEvent() {
+    StringProducer producer = new StringProducer();
+    bus.register(producer);
+    bus.postSticky("sticky");
+
+    bus.register(new StringListener());
+
+    assertThat(received).containsExactly(StringProducer.VALUE, "sticky");
+  }
+
+  @Test public void stickyEventIsDeliveredInOrderOfPriority() {
+    bus.postSticky("event");
+
+    bus.register(new Object() {
+      @Subscribe(priority = 1) public void low(String event) {
+        received.add("low");
+      }
+
+      @Subscribe(priority = 3) public void high(Object event) {
+        received.add("high");
+      }
+
+      @Subscribe(priority = 2) public void medium(String event) {
+        received.add("medium");
+      }
+
+      @Subscribe public void lowest(String event) {
+        received.add("lowest");
+      }
+    });
+
+    assertThat(received).containsExactly("high", "medium", "low", "lowest");
+  }
+
+  @Test public void stickyEventRejectedByEnforcerIsNotKept() {
+    Bus bus = new Bus(new ThreadEnforcer() {
+      @Override public void enforce(Bus bus) {
+        throw new IllegalStateException("Wrong thread.");
+      }
+    });
+
+    try {
+      bus.postSticky("event");
+      fail("Enforcer should reject the event.");
+    } catch (IllegalStateException expected) {
+      // Do nothing.
+    }
+    assertNull(bus.getStickyEvent(String.class));
+  }
+
+  public class StringListener {
+    @Subscribe public void handle(String event) {
+      received.add(event);
+    }
+  }
+}
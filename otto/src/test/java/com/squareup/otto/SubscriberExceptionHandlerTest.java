@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Bus#setSubscriberExceptionHandler(SubscriberExceptionHandler)}. */
+public class SubscriberExceptionHandlerTest {
+
+  private final Bus bus = new Bus(ThreadEnforcer.ANY);
+  private final List<Object> received = new ArrayList<Object>();
+
+  @Test public void exceptionIsRethrownOnceQueueIsDrained() {
+    registerFailingHandler();
+    bus.register(new Object() {
+      @Subscribe public void handle(Integer event) {
+        received.add(event);
+        if (event < 3) {
+          bus.post("failing");
+          bus.post(event + 1);
+        }
+      }
+    });
+
+    try {
+      bus.post(1);
+      fail("Exception of the handler should be rethrown.");
+    } catch (RuntimeException expected) {
+      assertEquals("Handler fails.", expected.getCause().getMessage());
+    }
+
+    assertThat(received).containsExactly(1, "failing", 2, "failing", 3);
+  }
+
+  @Test public void failingHandlerDoesNotStopDeliveryToOtherHandlers() {
+    bus.setSubscriberExceptionHandler(SubscriberExceptionHandler.CONTINUE);
+    registerFailingHandler();
+    bus.register(new Object() {
+      @Subscribe(priority = -1) public void handle(String event) {
+        received.add("after " + event);
+      }
+    });
+
+    bus.post("first");
+    bus.post("second");
+
+    assertThat(received).containsExactly("first", "after first", "second", "after second");
+  }
+
+  @Test public void batchIsDeliveredBeforeExceptionIsRethrown() {
+    registerFailingHandler();
+
+    try {
+      bus.postAll("first", "second");
+      fail("Exception of the handler should be rethrown.");
+    } catch (RuntimeException expected) {
+      // Do nothing.
+    }
+
+    assertThat(received).containsExactly("first", "second");
+  }
+
+  @Test public void exceptionHandlerReceivesExceptionAndEvent() {
+    final List<Object> handled = new ArrayList<Object>();
+    bus.setSubscriberExceptionHandler(new SubscriberExceptionHandler() {
+      @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+        handled.add(bus);
+        handled.add(event);
+      }
+    });
+    registerFailingHandler();
+
+    bus.post("event");
+
+    assertEquals(2, handled.size());
+    assertSame(bus, handled.get(0));
+    assertEquals("event", handled.get(1));
+  }
+
+  @Test public void loggedExceptionIsNotRethrown() {
+    bus.setSubscriberExceptionHandler(SubscriberExceptionHandler.LOG);
+    registerFailingHandler();
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("event");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void exceptionHandlerMustNotBeNull() {
+    bus.setSubscriberExceptionHandler(null);
+  }
+
+  private void registerFailingHandler() {
+    bus.register(new Object() {
+      @Subscribe public void handle(String event) {
+        received.add(event);
+        throw new IllegalStateException("Handler fails.");
+      }
+    });
+  }
+}
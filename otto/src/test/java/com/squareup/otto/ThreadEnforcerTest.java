@@ -16,8 +16,12 @@
 
 package com.squareup.otto;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
@@ -58,4 +62,48 @@ public class ThreadEnforcerTest {
     assertTrue(enforcer.called);
   }
 
+  @SuppressWarnings("deprecation")
+  @Test public void enforcerCalledForDeprecatedQueueMethods() {
+    RecordingThreadEnforcer enforcer = new RecordingThreadEnforcer();
+    Bus bus = new Bus(enforcer);
+    bus.register(new StringCatcher());
+    EventHandler handler = bus.getHandlersForEventType(String.class).iterator().next();
+
+    enforcer.called = false;
+    bus.enqueueEvent("Hello", handler);
+    assertTrue(enforcer.called);
+
+    enforcer.called = false;
+    bus.dispatchQueuedEvents();
+    assertTrue(enforcer.called);
+  }
+
+  @Test public void singleThreadedEnforcerBusDispatchesReentrantEventsInOrder() {
+    final Thread owner = Thread.currentThread();
+    final Bus bus = new Bus(new ThreadEnforcer.SingleThreaded() {
+      @Override public void enforce(Bus bus) {
+        if (Thread.currentThread() != owner) {
+          throw new IllegalStateException("Event bus " + bus + " accessed from non-owner thread.");
+        }
+      }
+    });
+    final List<Object> events = new ArrayList<Object>();
+    bus.register(new Object() {
+      @Subscribe public void onString(String event) {
+        events.add(event);
+        bus.post(1);
+        events.add(event);
+      }
+
+      @Subscribe public void onInteger(Integer event) {
+        events.add(event);
+      }
+    });
+
+    bus.post("Hello");
+    bus.post("World");
+
+    assertEquals(Arrays.<Object>asList("Hello", "Hello", 1, "World", "World", 1), events);
+  }
+
 }
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Subscribe#thread()}. */
+public class ThreadModeTest {
+
+  private final QueueExecutor main = new QueueExecutor();
+  private final QueueExecutor background = new QueueExecutor();
+  private final QueueExecutor async = new QueueExecutor();
+  private boolean onMainThread;
+  private final Bus bus = new Bus(ThreadEnforcer.ANY, "test", HandlerFinder.ANNOTATED,
+      new DeliveryExecutors(main, background, async) {
+        @Override public boolean isMainThread() {
+          return onMainThread;
+        }
+      });
+  private final List<String> received = new ArrayList<String>();
+
+  @Test public void postingHandlersAreCalledDirectly() {
+    bus.register(new Object() {
+      @Subscribe public void posting(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("event");
+  }
+
+  @Test public void mainHandlersShareOneTaskWhenPostedOffMainThread() {
+    bus.register(new MainListener("low", 0));
+    bus.register(new MainListener("high", 1));
+    bus.register(new Object() {
+      @Subscribe public void posting(String event) {
+        received.add("posting");
+      }
+    });
+
+    bus.post("event");
+    assertThat(received).containsExactly("posting");
+    assertEquals(1, main.tasks.size());
+
+    main.runAll();
+    assertThat(received).containsExactly("posting", "high", "low");
+  }
+
+  @Test public void mainHandlersAreCalledDirectlyOnMainThread() {
+    onMainThread = true;
+    bus.register(new MainListener("main", 0));
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("main");
+    assertEquals(0, main.tasks.size());
+  }
+
+  @Test public void backgroundHandlersHopOnlyFromMainThread() {
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.BACKGROUND) public void background(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("background");
+    assertThat(received).containsExactly("background");
+
+    onMainThread = true;
+    bus.post("main");
+    assertThat(received).containsExactly("background");
+    assertEquals(1, background.tasks.size());
+
+    background.runAll();
+    assertThat(received).containsExactly("background", "main");
+  }
+
+  @Test public void asyncHandlersAlwaysHop() {
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.ASYNC) public void async(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("event");
+    assertThat(received).isEmpty();
+
+    async.runAll();
+    assertThat(received).containsExactly("event");
+  }
+
+  @Test public void handlerUnregisteredBeforeTaskRunsReceivesNothing() {
+    MainListener listener = new MainListener("main", 0);
+    bus.register(listener);
+
+    bus.post("event");
+    bus.unregister(listener);
+    main.runAll();
+
+    assertThat(received).isEmpty();
+  }
+
+  @Test public void producedEventIsDeliveredOnHandlerThread() {
+    bus.register(new Object() {
+      @Produce public String produce() {
+        return "produced";
+      }
+    });
+    bus.register(new MainListener("main", 0));
+    assertThat(received).isEmpty();
+
+    main.runAll();
+    assertThat(received).containsExactly("main");
+  }
+
+  @Test public void failingHandlerDoesNotStopOthersOfItsGroup() {
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.MAIN, priority = 1) public void fail(String event) {
+        throw new IllegalStateException("Handler fails.");
+      }
+    });
+    bus.register(new MainListener("main", 0));
+    bus.post("event");
+
+    try {
+      main.runAll();
+      fail("Exception of the handler should be rethrown.");
+    } catch (RuntimeException expected) {
+      // Do nothing.
+    }
+    assertThat(received).containsExactly("main");
+  }
+
+  @Test public void asyncHandlerExceptionIsPassedToExceptionHandler() {
+    final RecordingExceptionHandler exceptionHandler = new RecordingExceptionHandler();
+    bus.setSubscriberExceptionHandler(exceptionHandler);
+    final IllegalStateException failure = new IllegalStateException("Handler fails.");
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.ASYNC, priority = 1) public void fail(String event) {
+        throw failure;
+      }
+
+      @Subscribe(thread = ThreadMode.ASYNC) public void async(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("event");
+    assertThat(exceptionHandler.exceptions).isEmpty();
+
+    async.runAll();
+    assertThat(exceptionHandler.exceptions).containsExactly(failure);
+    assertThat(exceptionHandler.events).containsExactly("event");
+    assertThat(received).containsExactly("event");
+  }
+
+  @Test public void exceptionsOfGroupOnPostingThreadAreHandledOnce() {
+    onMainThread = true;
+    final RecordingExceptionHandler exceptionHandler = new RecordingExceptionHandler();
+    bus.setSubscriberExceptionHandler(exceptionHandler);
+    final IllegalStateException first = new IllegalStateException("First handler fails.");
+    final IllegalStateException second = new IllegalStateException("Second handler fails.");
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.MAIN, priority = 1) public void first(String event) {
+        throw first;
+      }
+
+      @Subscribe(thread = ThreadMode.MAIN) public void second(String event) {
+        throw second;
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(exceptionHandler.exceptions).containsExactly(first, second);
+  }
+
+  @Test public void rejectedTaskIsPassedToExceptionHandler() {
+    final RejectedExecutionException rejection = new RejectedExecutionException("Executor is shut down.");
+    Bus bus = new Bus(ThreadEnforcer.ANY, "test", HandlerFinder.ANNOTATED,
+        new DeliveryExecutors(main, background, new Executor() {
+          @Override public void execute(Runnable command) {
+            throw rejection;
+          }
+        }));
+    final List<Object> handled = new ArrayList<Object>();
+    bus.setSubscriberExceptionHandler(new SubscriberExceptionHandler() {
+      @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+        handled.add(exception);
+        handled.add(event);
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.ASYNC) public void async(String event) {
+        received.add(event);
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(handled).containsExactly(rejection, "event");
+    assertThat(received).isEmpty();
+  }
+
+  @Test public void cancelledEventIsNotDeliveredToRestOfGroup() {
+    onMainThread = true;
+    bus.register(new Object() {
+      @Subscribe(thread = ThreadMode.MAIN, priority = 10) public void cancel(String event) {
+        received.add("cancel");
+        bus.cancelEventDelivery(event);
+      }
+
+      @Subscribe(thread = ThreadMode.MAIN, priority = 1) public void cancelled(String event) {
+        received.add("cancelled");
+      }
+    });
+    bus.register(new Object() {
+      @Subscribe public void posting(String event) {
+        received.add("posting");
+      }
+    });
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("cancel");
+  }
+
+  @Test public void mixedModesAreDeliveredInOrderOfPriority() {
+    onMainThread = true;
+    bus.register(new Object() {
+      @Subscribe(priority = 10) public void posting10(String event) {
+        received.add("posting10");
+      }
+
+      @Subscribe(thread = ThreadMode.MAIN, priority = 5) public void main5(String event) {
+        received.add("main5");
+      }
+
+      @Subscribe(priority = 7) public void posting7(String event) {
+        received.add("posting7");
+      }
+
+      @Subscribe(thread = ThreadMode.MAIN, priority = 1) public void main1(String event) {
+        received.add("main1");
+      }
+
+      @Subscribe(priority = 3) public void posting3(String event) {
+        received.add("posting3");
+      }
+    });
+
+    bus.post("event");
+    assertThat(received).containsExactly("posting10", "posting7", "main5", "posting3", "main1");
+
+    received.clear();
+    onMainThread = false;
+    bus.post("event");
+    assertThat(received).containsExactly("posting10", "posting7", "posting3");
+    assertEquals("One task per run of main handlers.", 2, main.tasks.size());
+    main.runAll();
+    assertThat(received).containsExactly("posting10", "posting7", "posting3", "main5", "main1");
+  }
+
+  public class MainListener {
+    private final String name;
+    private final int priority;
+
+    MainListener(String name, int priority) {
+      this.name = name;
+      this.priority = priority;
+    }
+
+    @Subscribe(thread = ThreadMode.MAIN) public void main(String event) {
+      if (priority == 0) {
+        received.add(name);
+      }
+    }
+
+    @Subscribe(thread = ThreadMode.MAIN, priority = 1) public void mainHigh(String event) {
+      if (priority == 1) {
+        received.add(name);
+      }
+    }
+  }
+
+  private static final class RecordingExceptionHandler implements SubscriberExceptionHandler {
+    /** Exceptions thrown by handlers, unwrapped. */
+    final List<Throwable> exceptions = new ArrayList<Throwable>();
+    final List<Object> events = new ArrayList<Object>();
+
+    @Override public void handleException(RuntimeException exception, Bus bus, Object event) {
+      exceptions.add(exception.getCause());
+      events.add(event);
+    }
+  }
+
+  private static final class QueueExecutor implements Executor {
+    final Queue<Runnable> tasks = new LinkedList<Runnable>();
+
+    @Override public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove().run();
+      }
+    }
+  }
+}
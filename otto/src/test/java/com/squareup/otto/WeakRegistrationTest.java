@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 Sergey Solovyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squareup.otto;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Test case for {@link Bus#registerWeakly(Object)}. */
+public class WeakRegistrationTest {
+
+  private static final int MAX_GC_ATTEMPTS = 50;
+
+  private final Bus bus = new Bus(ThreadEnforcer.ANY);
+  private final List<String> received = new ArrayList<String>();
+
+  @Test public void weaklyRegisteredObjectReceivesEvents() {
+    Listener listener = new Listener(received);
+    bus.registerWeakly(listener);
+
+    bus.post("event");
+
+    assertThat(received).containsExactly("event");
+    assertEquals(0, bus.purgeCollectedListeners());
+  }
+
+  @Test public void weaklyRegisteredObjectCanBeUnregistered() {
+    Listener listener = new Listener(received);
+    bus.registerWeakly(listener);
+    bus.unregister(listener);
+
+    bus.post("event");
+
+    assertThat(received).isEmpty();
+  }
+
+  @Test public void objectCanBeRegisteredOnlyOnce() {
+    Listener listener = new Listener(received);
+    bus.registerWeakly(listener);
+    try {
+      bus.register(listener);
+      fail("Object should already be registered.");
+    } catch (IllegalArgumentException expected) {
+      // Do nothing.
+    }
+  }
+
+  @Test public void collectedObjectIsPurged() throws InterruptedException {
+    WeakReference<Object> reference = registerWeakly();
+    awaitCollection(reference);
+
+    for (int i = 0; i < MAX_GC_ATTEMPTS && bus.getPurgedHandlerCount() == 0; i++) {
+      // the reference might be enqueued a bit later than it's cleared
+      bus.post("event");
+      Thread.sleep(10);
+    }
+
+    assertThat(received).isEmpty();
+    assertEquals(1, bus.getPurgedHandlerCount());
+    assertEquals(0, bus.getHandlersForEventType(String.class).size());
+    assertEquals(0, bus.purgeCollectedListeners());
+  }
+
+  @Test public void collectedObjectIsPurgedOnDemand() throws InterruptedException {
+    WeakReference<Object> reference = registerWeakly();
+    awaitCollection(reference);
+
+    int purged = 0;
+    for (int i = 0; i < MAX_GC_ATTEMPTS && purged == 0; i++) {
+      // the reference might be enqueued a bit later than it's cleared
+      purged = bus.purgeCollectedListeners();
+      Thread.sleep(10);
+    }
+
+    assertEquals(1, purged);
+    assertEquals(1, bus.getPurgedHandlerCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void producersCannotBeRegisteredWeakly() {
+    bus.registerWeakly(new StringProducer());
+  }
+
+  @Test public void handlerOfCollectedListenerIsInvalid() throws NoSuchMethodException {
+    Listener listener = new Listener(received);
+    Method method = Listener.class.getMethod("handle", String.class);
+    ReflectiveEventHandler handler = new ReflectiveEventHandler(listener, method);
+    ReflectiveEventHandler equal = new ReflectiveEventHandler(listener, method);
+    WeakReference<Object> reference = new WeakReference<Object>(listener);
+    handler.holdWeakly(reference);
+    assertTrue(handler.isValid());
+    assertEquals(equal, handler);
+
+    reference.clear();
+
+    assertFalse(handler.isValid());
+    assertEquals(equal.hashCode(), handler.hashCode());
+    assertFalse(equal.equals(handler));
+    handler.handleEvent("event");
+    assertThat(received).isEmpty();
+  }
+
+  /** Registers a listener weakly, without keeping it reachable. */
+  private WeakReference<Object> registerWeakly() {
+    Listener listener = new Listener(received);
+    bus.registerWeakly(listener);
+    return new WeakReference<Object>(listener);
+  }
+
+  private static void awaitCollection(WeakReference<?> reference) throws InterruptedException {
+    for (int i = 0; i < MAX_GC_ATTEMPTS && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull("Listener should have been collected.", reference.get());
+  }
+
+  public static class Listener {
+    private final List<String> received;
+
+    Listener(List<String> received) {
+      this.received = received;
+    }
+
+    @Subscribe public void handle(String event) {
+      received.add(event);
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package com.squareup.otto.outside;
 
 import com.squareup.otto.Bus;
+import com.squareup.otto.Produce;
 import com.squareup.otto.Subscribe;
 import com.squareup.otto.ThreadEnforcer;
 
@@ -188,6 +189,118 @@ public class AnnotatedHandlerFinderTest {
     }
   }
 
+  public static class AnnotatedNotAbstractInSuperclassTest
+      extends AbstractEventBusTest<AnnotatedNotAbstractInSuperclassTest.SubClass> {
+    static class SuperClass {
+      final List<Object> notOverriddenInSubclassEvents = new ArrayList<Object>();
+      final List<Object> overriddenNotAnnotatedInSubclassEvents = new ArrayList<Object>();
+      final List<Object> overriddenAndAnnotatedInSubclassEvents = new ArrayList<Object>();
+      final List<Object> differentlyOverriddenNotAnnotatedInSubclassBadEvents = new ArrayList<Object>();
+
+      @Subscribe
+      public void notOverriddenInSubclass(Object o) {
+        notOverriddenInSubclassEvents.add(o);
+      }
+
+      @Subscribe
+      public void overriddenNotAnnotatedInSubclass(Object o) {
+        overriddenNotAnnotatedInSubclassEvents.add(o);
+      }
+
+      @Subscribe
+      public void overriddenAndAnnotatedInSubclass(Object o) {
+        overriddenAndAnnotatedInSubclassEvents.add(o);
+      }
+
+      @Subscribe
+      public void differentlyOverriddenNotAnnotatedInSubclass(Object o) {
+        // the subclass overrides this and does *not* call super.
+        differentlyOverriddenNotAnnotatedInSubclassBadEvents.add(o);
+      }
+    }
+
+    static class SubClass extends SuperClass {
+      final List<Object> differentlyOverriddenNotAnnotatedInSubclassGoodEvents = new ArrayList<Object>();
+
+      @Override
+      public void overriddenNotAnnotatedInSubclass(Object o) {
+        super.overriddenNotAnnotatedInSubclass(o);
+      }
+
+      @Subscribe @Override
+      public void overriddenAndAnnotatedInSubclass(Object o) {
+        super.overriddenAndAnnotatedInSubclass(o);
+      }
+
+      @Override
+      public void differentlyOverriddenNotAnnotatedInSubclass(Object o) {
+        differentlyOverriddenNotAnnotatedInSubclassGoodEvents.add(o);
+      }
+    }
+
+    @Test public void notOverriddenInSubclass() {
+      assertThat(getHandler().notOverriddenInSubclassEvents).containsExactly(EVENT);
+    }
+
+    @Test public void overriddenNotAnnotatedInSubclass() {
+      assertThat(getHandler().overriddenNotAnnotatedInSubclassEvents).containsExactly(EVENT);
+    }
+
+    @Test public void overriddenAndAnnotatedInSubclass() {
+      assertThat(getHandler().overriddenAndAnnotatedInSubclassEvents).containsExactly(EVENT);
+    }
+
+    @Test public void differentlyOverriddenNotAnnotatedInSubclass() {
+      assertThat(getHandler().differentlyOverriddenNotAnnotatedInSubclassGoodEvents).containsExactly(EVENT);
+      assertThat(getHandler().differentlyOverriddenNotAnnotatedInSubclassBadEvents).isEmpty();
+    }
+
+    @Override SubClass createHandler() {
+      return new SubClass();
+    }
+  }
+
+  public static class InheritedProducerTest {
+    static class SuperClass {
+      @Produce public String produceString() {
+        return "super";
+      }
+    }
+
+    static class SubClass extends SuperClass {
+      @Produce @Override public String produceString() {
+        return "sub";
+      }
+    }
+
+    static class ConflictingSubClass extends SuperClass {
+      @Produce public String produceAnotherString() {
+        return "another";
+      }
+    }
+
+    @Test public void overriddenProducerIsCalledOnce() {
+      final List<String> events = new ArrayList<String>();
+      Bus bus = new Bus(ThreadEnforcer.ANY);
+      bus.register(new Object() {
+        @Subscribe public void onString(String s) {
+          events.add(s);
+        }
+      });
+      bus.register(new SubClass());
+      assertThat(events).containsExactly("sub");
+    }
+
+    @Test public void producerForInheritedTypeFails() {
+      try {
+        new Bus(ThreadEnforcer.ANY).register(new ConflictingSubClass());
+        fail("Annotation finder allowed two producers for the same type.");
+      } catch (IllegalArgumentException expected) {
+        // Do nothing.
+      }
+    }
+  }
+
   public static class FailsOnInterfaceSubscription {
 
     static class InterfaceSubscriber {
@@ -204,6 +317,18 @@ public class AnnotatedHandlerFinderTest {
         // Do nothing.
       }
     }
+
+    @Test public void subscribingToInterfacesFailsOnEveryRegistration() {
+      Bus bus = new Bus(ThreadEnforcer.ANY);
+      for (int i = 0; i < 2; i++) {
+        try {
+          bus.register(new InterfaceSubscriber());
+          fail("Annotation finder allowed subscription to illegal interface type.");
+        } catch (IllegalArgumentException expected) {
+          // Do nothing.
+        }
+      }
+    }
   }
 
 }